@@ -0,0 +1,125 @@
+package com.griddynamics.searchretraining.documentindexing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.searchretraining.documentindexing.model.ProductDocument;
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Deterministic inputs shared by the benchmarks.
+ */
+public final class BenchmarkData {
+
+    private static final long SEED = 42;
+
+    private static final String[] UPDATED_FIELDS = {
+            ProductDocument.Fields.PRICE,
+            ProductDocument.Fields.STOCK,
+            ProductDocument.Fields.AVAILABLE,
+            ProductDocument.Fields.NAME,
+            ProductDocument.Fields.DESCRIPTION
+    };
+
+    private static final Instant START = Instant.parse("2025-06-20T11:00:00Z");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Same configuration as the ObjectMapper of the application.
+     */
+    public static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    /**
+     * @param duplicateRatio share of events repeating the {@code (id, field)} of an earlier event of the batch
+     */
+    public static List<ProductUpdateEvent> updateEvents(int batchSize, double duplicateRatio) {
+        Random random = new Random(SEED);
+        List<ProductUpdateEvent> events = new ArrayList<>(batchSize);
+
+        for (int i = 0; i < batchSize; i++) {
+            String id;
+            String field;
+            if (i > 0 && random.nextDouble() < duplicateRatio) {
+                ProductUpdateEvent earlier = events.get(random.nextInt(i));
+                id = earlier.id();
+                field = earlier.field();
+            } else {
+                id = "SKU-" + (100_000 + i);
+                field = UPDATED_FIELDS[random.nextInt(UPDATED_FIELDS.length)];
+            }
+
+            events.add(new ProductUpdateEvent(id, field,
+                    String.valueOf(random.nextInt(1000)),
+                    String.valueOf(random.nextInt(1000)),
+                    START.plusMillis(random.nextInt(10_000))));
+        }
+        return events;
+    }
+
+    public static List<ProductPartialUpdate> partialUpdates(int batchSize, int documentSize) {
+        return IntStream.range(0, batchSize)
+                .mapToObj(i -> new ProductPartialUpdate(
+                        "SKU-" + (100_000 + i),
+                        Map.of(
+                                ProductDocument.Fields.PRICE, String.valueOf(i % 1000),
+                                ProductDocument.Fields.DESCRIPTION, text(documentSize)
+                        ),
+                        START.plusMillis(i)))
+                .toList();
+    }
+
+    /**
+     * @param documentSize approximate size of one document in bytes, mostly taken by its description
+     */
+    public static ProductDocument product(int index, int documentSize) {
+        return new ProductDocument(
+                "SKU-" + (100_000 + index),
+                "Product " + index,
+                text(documentSize),
+                "Apparel > Jackets",
+                "UrbanFlex",
+                19.99 + index % 100,
+                "USD",
+                index % 7 != 0,
+                index % 500,
+                List.of("Blue", "Black"),
+                List.of("S", "M", "L"),
+                ZonedDateTime.ofInstant(START, ZoneOffset.UTC)
+        );
+    }
+
+    public static byte[] catalog(int documents, int documentSize, ObjectMapper objectMapper) {
+        List<ProductDocument> products = IntStream.range(0, documents)
+                .mapToObj(i -> product(i, documentSize))
+                .toList();
+        try {
+            return objectMapper.writeValueAsBytes(products);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String text(int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append("Lightweight, moisture-wicking jersey with reflective accents. ");
+        }
+        text.setLength(length);
+        return text.toString();
+    }
+}
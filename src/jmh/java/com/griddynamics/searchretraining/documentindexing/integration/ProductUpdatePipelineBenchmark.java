@@ -0,0 +1,60 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import com.griddynamics.searchretraining.documentindexing.BenchmarkData;
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-batch cost of the transformer and coalescer stages of an update lane.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ProductUpdatePipelineBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int batchSize;
+
+    @Param({"0.0", "0.5", "0.9"})
+    double duplicateRatio;
+
+    private final ProductUpdatedEventTransformer transformer = new ProductUpdatedEventTransformer(
+            new LastAppliedTimestamps(1 << 20, new SimpleMeterRegistry()));
+
+    private final ProductUpdateCoalescer coalescer = new ProductUpdateCoalescer(new SimpleMeterRegistry());
+
+    private List<ProductUpdateEvent> events;
+
+    @Setup
+    public void setup() {
+        events = BenchmarkData.updateEvents(batchSize, duplicateRatio);
+    }
+
+    @Benchmark
+    public List<ProductUpdateEvent> transform() {
+        return transformer.transform(events);
+    }
+
+    @Benchmark
+    public List<ProductPartialUpdate> transformAndCoalesce() {
+        return coalescer.transform(transformer.transform(events));
+    }
+}
@@ -0,0 +1,71 @@
+package com.griddynamics.searchretraining.documentindexing.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.searchretraining.documentindexing.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization cost of the documents and events handled by the service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JsonSerializationBenchmark {
+
+    @Param({"200", "2000", "20000"})
+    int documentSize;
+
+    private final ObjectMapper objectMapper = BenchmarkData.objectMapper();
+
+    private ProductDocument product;
+
+    private byte[] productJson;
+
+    private ProductUpdateEvent event;
+
+    private byte[] eventJson;
+
+    @Setup
+    public void setup() throws IOException {
+        product = BenchmarkData.product(1, documentSize);
+        productJson = objectMapper.writeValueAsBytes(product);
+        event = BenchmarkData.updateEvents(1, 0).get(0);
+        eventJson = objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] serializeProduct() throws IOException {
+        return objectMapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public ProductDocument deserializeProduct() throws IOException {
+        return objectMapper.readValue(productJson, ProductDocument.class);
+    }
+
+    @Benchmark
+    public byte[] serializeEvent() throws IOException {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public ProductUpdateEvent deserializeEvent() throws IOException {
+        return objectMapper.readValue(eventJson, ProductUpdateEvent.class);
+    }
+}
@@ -0,0 +1,136 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.NdJsonpSerializable;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.util.BinaryData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.searchretraining.documentindexing.BenchmarkData;
+import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
+import jakarta.json.stream.JsonGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building and serializing bulk request bodies, as the transport would, without a live Elasticsearch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BulkRequestBenchmark {
+
+    private static final String INDEX = "products_index_benchmark";
+
+    @Param({"10", "100", "1000"})
+    int batchSize;
+
+    @Param({"200", "2000", "20000"})
+    int documentSize;
+
+    private final ObjectMapper objectMapper = BenchmarkData.objectMapper();
+
+    private final JsonpMapper jsonpMapper = new JacksonJsonpMapper(objectMapper);
+
+    private final CatalogReader catalogReader = new CatalogReader(objectMapper);
+
+    private final CatalogReader passThroughReader = new CatalogReader(objectMapper, new IndexProperties.PassThrough(true, false));
+
+    private List<ProductPartialUpdate> updates;
+
+    private byte[] catalog;
+
+    @Setup
+    public void setup() {
+        updates = BenchmarkData.partialUpdates(batchSize, documentSize);
+        catalog = BenchmarkData.catalog(batchSize, documentSize, objectMapper);
+    }
+
+    @Benchmark
+    public byte[] updateProducts() {
+        return updateProducts(false);
+    }
+
+    @Benchmark
+    public byte[] updateProductsGuarded() {
+        return updateProducts(true);
+    }
+
+    @Benchmark
+    public byte[] indexBulkData() throws IOException {
+        return indexBulkData(catalogReader);
+    }
+
+    @Benchmark
+    public byte[] indexBulkDataPassThrough() throws IOException {
+        return indexBulkData(passThroughReader);
+    }
+
+    private byte[] updateProducts(boolean guarded) {
+        List<BulkItem> items = updates.stream()
+                .map(update -> BulkItem.update(INDEX, update, guarded))
+                .toList();
+        return serialize(RetryingBulkExecutor.bulkRequest(items, Refresh.False));
+    }
+
+    private byte[] indexBulkData(CatalogReader reader) throws IOException {
+        List<BulkItem> items = new ArrayList<>(batchSize);
+        reader.read(new ByteArrayInputStream(catalog), INDEX,
+                (id, document, sizeInBytes) -> items.add(BulkItem.index(INDEX, id, document, sizeInBytes)));
+        return serialize(RetryingBulkExecutor.bulkRequest(items, null));
+    }
+
+    private byte[] serialize(NdJsonpSerializable request) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeLines(request, out);
+        return out.toByteArray();
+    }
+
+    private void writeLines(NdJsonpSerializable value, ByteArrayOutputStream out) {
+        Iterator<?> values = value._serializables();
+        while (values.hasNext()) {
+            Object item = values.next();
+            if (item instanceof NdJsonpSerializable nested && item != value) {
+                writeLines(nested, out);
+                continue;
+            }
+            if (item instanceof BinaryData data) {
+                // pre-serialized documents are copied as they are, like the transport does
+                try {
+                    data.writeTo(out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                out.write('\n');
+                continue;
+            }
+
+            try (JsonGenerator generator = jsonpMapper.jsonProvider().createGenerator(out)) {
+                jsonpMapper.serialize(item, generator);
+            }
+            out.write('\n');
+        }
+    }
+}
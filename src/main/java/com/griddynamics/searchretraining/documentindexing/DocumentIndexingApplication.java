@@ -1,12 +1,20 @@
 package com.griddynamics.searchretraining.documentindexing;
 
 import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.config.JournalProperties;
+import com.griddynamics.searchretraining.documentindexing.config.PipelineProperties;
+import com.griddynamics.searchretraining.documentindexing.config.ProductCacheProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
-@EnableConfigurationProperties({IndexProperties.class})
+@EnableConfigurationProperties({
+        IndexProperties.class,
+        PipelineProperties.class,
+        JournalProperties.class,
+        ProductCacheProperties.class
+})
 public class DocumentIndexingApplication {
 
     public static void main(String[] args) {
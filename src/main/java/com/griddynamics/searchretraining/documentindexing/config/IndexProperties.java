@@ -1,15 +1,152 @@
 package com.griddynamics.searchretraining.documentindexing.config;
 
+import co.elastic.clients.elasticsearch._types.HealthStatus;
+import co.elastic.clients.elasticsearch._types.Refresh;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @ConfigurationProperties(prefix = "index")
 public record IndexProperties(
         String alias,
         String settings,
-        String bulkData
+        String bulkData,
+        @DefaultValue Bulk bulk,
+        @DefaultValue BulkLoad bulkLoad,
+        @DefaultValue("none") RefreshPolicy updateRefresh,
+        @DefaultValue Retry retry,
+        @DefaultValue("500") int mgetChunkSize,
+        @DefaultValue Delta delta,
+        @DefaultValue PassThrough passThrough,
+        @DefaultValue("sync") ClientMode clientMode,
+        @DefaultValue("true") boolean guardStaleUpdates,
+        @DefaultValue CatchUp catchUp
 ) {
 
+    public IndexProperties {
+        if (mgetChunkSize <= 0) {
+            throw new IllegalArgumentException("index.mget-chunk-size must be positive: " + mgetChunkSize);
+        }
+    }
+
     public String aliasPattern() {
         return alias + "_*";
     }
-}
\ No newline at end of file
+
+    /**
+     * Limits for the bulk requests sent while loading {@code bulkData} into a new index.
+     * A request is cut as soon as either {@code maxDocuments} or {@code maxSize} is reached.
+     * When {@code bulkData} is made of several files, up to {@code readers} of them are parsed at the same time
+     * and feed the same bulk requests.
+     */
+    public record Bulk(
+            @DefaultValue("1000") int maxDocuments,
+            @DefaultValue("5MB") DataSize maxSize,
+            @DefaultValue("2") int maxConcurrentRequests,
+            @DefaultValue("4") int readers
+    ) {
+
+        public Bulk {
+            if (maxDocuments <= 0) {
+                throw new IllegalArgumentException("index.bulk.max-documents must be positive: " + maxDocuments);
+            }
+        }
+    }
+
+    /**
+     * Profile applied to a freshly created index while {@code bulkData} is loaded into it.
+     * When enabled the index is created without refreshes and replicas; the values from the
+     * {@code settings} file (or {@code refreshInterval} if the file does not define one) are
+     * restored before the alias is switched to the new index.
+     */
+    public record BulkLoad(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("1s") String refreshInterval,
+            @DefaultValue("true") boolean refresh,
+            @DefaultValue("0") int maxNumSegments,
+            @DefaultValue("true") boolean waitForHealth,
+            @DefaultValue("green") HealthStatus waitForStatus,
+            @DefaultValue("30s") Duration healthTimeout
+    ) {
+    }
+
+    /**
+     * Retries of bulk items rejected with a transient error and of whole bulk requests failing with an I/O error.
+     * Items Elasticsearch still rejects after {@code maxRetries} are appended to {@code deadLetterFile};
+     * a request still failing with an I/O error fails the caller instead.
+     */
+    public record Retry(
+            @DefaultValue("5") int maxRetries,
+            @DefaultValue("100ms") Duration initialBackoff,
+            @DefaultValue("10s") Duration maxBackoff,
+            @DefaultValue("data/dead-letters.ndjson") String deadLetterFile
+    ) {
+    }
+
+    /**
+     * Content fingerprints of the loaded catalog kept in {@code fingerprintFile} for the delta reindex.
+     * Every successful load replaces the file; a delta reindex without it falls back to a full rebuild.
+     */
+    public record Delta(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("data/catalog-fingerprints.bin") String fingerprintFile
+    ) {
+    }
+
+    /**
+     * Sends the catalog documents to Elasticsearch as the raw bytes read from {@code bulkData} instead of
+     * materializing and re-serializing them. With {@code validate} every document is still bound to
+     * {@code ProductDocument} and the ones that do not fit are reported as errors instead of being sent.
+     */
+    public record PassThrough(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("true") boolean validate
+    ) {
+    }
+
+    /**
+     * Client used for bulk requests. With {@code ASYNC} the catalog load keeps up to
+     * {@link Bulk#maxConcurrentRequests()} bulk requests in flight without a thread per request,
+     * and retries are scheduled instead of slept.
+     */
+    public enum ClientMode {
+        SYNC,
+        ASYNC
+    }
+
+    /**
+     * Replay of the product updates made while a full reindex builds the new index. The updates are buffered
+     * in memory, up to {@code maxBufferedUpdates}, and replayed into the new index in up to {@code maxRounds}
+     * rounds; the last one, at most {@code finalRoundSize} updates if earlier rounds caught up, holds updates
+     * until the alias is switched. A rebuild with more updates than can be buffered is not switched to.
+     */
+    public record CatchUp(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("1000000") int maxBufferedUpdates,
+            @DefaultValue("5") int maxRounds,
+            @DefaultValue("1000") int finalRoundSize
+    ) {
+    }
+
+    /**
+     * Refresh requested by the bulk updates of the asynchronous pipeline.
+     * Reads by id stay consistent regardless of the policy because they use realtime GET.
+     */
+    public enum RefreshPolicy {
+        NONE(Refresh.False),
+        WAIT_FOR(Refresh.WaitFor),
+        TRUE(Refresh.True);
+
+        private final Refresh refresh;
+
+        RefreshPolicy(Refresh refresh) {
+            this.refresh = refresh;
+        }
+
+        public Refresh refresh() {
+            return refresh;
+        }
+    }
+}
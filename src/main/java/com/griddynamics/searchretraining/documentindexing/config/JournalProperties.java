@@ -0,0 +1,21 @@
+package com.griddynamics.searchretraining.documentindexing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Write-ahead journal of accepted update events.
+ * Appends are flushed to disk together every {@code fsyncInterval}; a zero interval
+ * forces every append individually. Segments are preallocated files of {@code segmentSize}.
+ */
+@ConfigurationProperties(prefix = "journal")
+public record JournalProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/journal") String directory,
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("5ms") Duration fsyncInterval
+) {
+}
@@ -0,0 +1,86 @@
+package com.griddynamics.searchretraining.documentindexing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Settings of the asynchronous product update pipeline.
+ * Events are partitioned by product id into {@code lanes}; every lane aggregates up to
+ * {@code batchSize} events or waits {@code groupTimeout} before sending one bulk update.
+ * With {@code adaptive} batching enabled both values are only the starting point.
+ * All queues are bounded: when the intake queue cannot take an event within {@code sendTimeout}
+ * the producer is asked to retry after {@code retryAfter}. With the journal enabled, streamed request bodies
+ * are journaled in chunks of {@code ingestChunkSize} events.
+ * Events of the fields listed by {@code priorityClasses} are taken from the intake queue first and go through
+ * lanes of their own; the lane and batch settings above apply to the events of all other fields.
+ * At most {@code maxConcurrentBulks} bulk updates run at the same time across all lanes.
+ */
+@ConfigurationProperties(prefix = "pipeline")
+public record PipelineProperties(
+        @DefaultValue("1") int lanes,
+        @DefaultValue("10") int batchSize,
+        @DefaultValue("1000ms") Duration groupTimeout,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("1000") int laneCapacity,
+        @DefaultValue("4") int lanePendingBatches,
+        @DefaultValue("100ms") Duration sendTimeout,
+        @DefaultValue("1s") Duration retryAfter,
+        @DefaultValue("500") int ingestChunkSize,
+        @DefaultValue Adaptive adaptive,
+        @DefaultValue StaleFilter staleFilter,
+        @DefaultValue("4") int maxConcurrentBulks,
+        @DefaultValue List<PriorityClass> priorityClasses
+) {
+
+    /**
+     * AIMD control of the aggregator release thresholds.
+     * The batch size grows by {@code batchSizeStep} after every bulk update of a full batch finishing within
+     * {@code targetLatency} without rejections and is multiplied by {@code decreaseFactor} after a slow or
+     * rejected one. The group timeout grows by
+     * {@code groupTimeoutStep} while batches are released full and is multiplied by {@code decreaseFactor}
+     * when they are released by the timeout, so events do not wait long at low traffic.
+     */
+    public record Adaptive(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("200ms") Duration targetLatency,
+            @DefaultValue("10") int minBatchSize,
+            @DefaultValue("1000") int maxBatchSize,
+            @DefaultValue("10") int batchSizeStep,
+            @DefaultValue("10ms") Duration minGroupTimeout,
+            @DefaultValue("1000ms") Duration maxGroupTimeout,
+            @DefaultValue("20ms") Duration groupTimeoutStep,
+            @DefaultValue("0.5") double decreaseFactor
+    ) {
+    }
+
+    /**
+     * Updates of {@code fields}, ranked by their position in {@code priorityClasses}, the first one highest.
+     * Batches are released at {@code batchSize} events or after {@code groupTimeout} at the latest, also with
+     * adaptive batching, and the class may hold up to {@code bulkShare} of {@code maxConcurrentBulks}.
+     * A class without fields takes the events of all fields no other class lists, instead of the default lanes.
+     * {@code latencyObjective} adds a service level objective bucket to the class latency histogram.
+     */
+    public record PriorityClass(
+            String name,
+            @DefaultValue List<String> fields,
+            @DefaultValue("1") int lanes,
+            @DefaultValue("10") int batchSize,
+            @DefaultValue("100ms") Duration groupTimeout,
+            @DefaultValue("1.0") double bulkShare,
+            Duration latencyObjective
+    ) {
+    }
+
+    /**
+     * Drops events older than the last one applied for the same product field in an earlier batch.
+     * {@code capacity} bounds the number of tracked fields, at 16 bytes of off-heap memory each.
+     */
+    public record StaleFilter(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("1048576") int capacity
+    ) {
+    }
+}
@@ -0,0 +1,18 @@
+package com.griddynamics.searchretraining.documentindexing.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * In-process cache of products served by {@code GET /products/{productId}}.
+ * Entries are evicted by W-TinyLFU once {@code maximumSize} is reached and expire {@code ttl} after they were loaded.
+ */
+@ConfigurationProperties(prefix = "product-cache")
+public record ProductCacheProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10000") long maximumSize,
+        @DefaultValue("30s") Duration ttl
+) {
+}
@@ -1,12 +1,18 @@
 package com.griddynamics.searchretraining.documentindexing.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.json.JsonpMapper;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.griddynamics.searchretraining.documentindexing.integration.ProductUpdatedEventHandler;
-import com.griddynamics.searchretraining.documentindexing.integration.ProductUpdatedEventTransformer;
+import com.griddynamics.searchretraining.documentindexing.integration.PriorityClasses;
+import com.griddynamics.searchretraining.documentindexing.integration.ProductUpdateLanes;
+import com.griddynamics.searchretraining.documentindexing.metrics.PipelineMetrics;
+import com.griddynamics.searchretraining.documentindexing.metrics.QueueWaitInterceptor;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.PriorityChannel;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.dsl.IntegrationFlow;
 import org.springframework.messaging.PollableChannel;
@@ -14,29 +20,32 @@ import org.springframework.messaging.PollableChannel;
 @Configuration
 public class ProductIntegrationConfig {
 
+    /**
+     * Intake queue handing out the events of higher priority classes first.
+     */
     @Bean
-    public PollableChannel productUpdateChannel() {
-        return new QueueChannel();
+    public QueueChannel productUpdateChannel(PipelineProperties pipelineProperties, PipelineMetrics pipelineMetrics,
+                                             PriorityClasses priorityClasses) {
+        QueueChannel channel = new PriorityChannel(pipelineProperties.queueCapacity(), priorityClasses.intakeOrder());
+        channel.addInterceptor(new QueueWaitInterceptor(pipelineMetrics.queueWait("productUpdateChannel")));
+        return channel;
     }
 
     @Bean
     public IntegrationFlow productUpdateFlow(
             PollableChannel productUpdateChannel,
-            ProductUpdatedEventTransformer transformer,
-            ProductUpdatedEventHandler handler
+            ProductUpdateLanes productUpdateLanes
     ) {
         return IntegrationFlow.from(productUpdateChannel)
-                .aggregate(a -> a
-                        .correlationStrategy(m -> "all")
-                        .releaseStrategy(g -> g.size() >= 10)
-                        .groupTimeout(1000)
-                        .sendPartialResultOnExpiry(true)
-                )
-                .transform(transformer)
-                .handle(handler)
+                .route(ProductUpdateEvent.class, productUpdateLanes::channelFor)
                 .get();
     }
 
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport elasticsearchTransport) {
+        return new ElasticsearchAsyncClient(elasticsearchTransport);
+    }
+
     @Bean
     public JsonpMapper jsonpMapper(ObjectMapper objectMapper) {
         return new JacksonJsonpMapper(objectMapper);
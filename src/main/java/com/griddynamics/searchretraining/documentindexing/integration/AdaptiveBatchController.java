@@ -0,0 +1,110 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import com.griddynamics.searchretraining.documentindexing.config.PipelineProperties;
+import com.griddynamics.searchretraining.documentindexing.metrics.PipelineMetrics.ReleaseReason;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Current release thresholds of the lane aggregators of one priority class, adjusted with additive increase /
+ * multiplicative decrease from the bulk update latency, Elasticsearch rejections and the way batches are released.
+ * The thresholds are shared by all lanes of the class because they all write to the same cluster.
+ */
+@Slf4j
+public class AdaptiveBatchController {
+
+    private final PipelineProperties.Adaptive adaptive;
+
+    private final String priorityClass;
+
+    private final long minGroupTimeoutMillis;
+
+    private final long maxGroupTimeoutMillis;
+
+    private volatile int batchSize;
+
+    private volatile long groupTimeoutMillis;
+
+    /**
+     * @param maxGroupTimeout upper bound of the group timeout, lowered to {@code adaptive.maxGroupTimeout} if above
+     */
+    public AdaptiveBatchController(String priorityClass, int batchSize, Duration groupTimeout, Duration maxGroupTimeout,
+                                   PipelineProperties.Adaptive adaptive, MeterRegistry meterRegistry) {
+        this.adaptive = adaptive;
+        this.priorityClass = priorityClass;
+        this.maxGroupTimeoutMillis = Math.min(maxGroupTimeout.toMillis(), adaptive.maxGroupTimeout().toMillis());
+        this.minGroupTimeoutMillis = Math.min(adaptive.minGroupTimeout().toMillis(), maxGroupTimeoutMillis);
+        this.batchSize = adaptive.enabled()
+                ? clamp(batchSize, adaptive.minBatchSize(), adaptive.maxBatchSize())
+                : batchSize;
+        this.groupTimeoutMillis = adaptive.enabled()
+                ? clamp(groupTimeout.toMillis(), minGroupTimeoutMillis, maxGroupTimeoutMillis)
+                : groupTimeout.toMillis();
+
+        Gauge.builder("product.update.batch.size.limit", this, AdaptiveBatchController::batchSize)
+                .description("Number of events at which the aggregator releases a batch")
+                .tag("class", priorityClass)
+                .register(meterRegistry);
+        Gauge.builder("product.update.group.timeout", this, AdaptiveBatchController::groupTimeoutMillis)
+                .description("Time after which the aggregator releases an incomplete batch")
+                .tag("class", priorityClass)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    public int batchSize() {
+        return batchSize;
+    }
+
+    public long groupTimeoutMillis() {
+        return groupTimeoutMillis;
+    }
+
+    /**
+     * Full batches mean events arrive faster than the timeout, so it may grow to let bulks fill up;
+     * batches released by the timeout mean events wait for nothing, so it shrinks.
+     */
+    public synchronized void onRelease(ReleaseReason reason) {
+        if (!adaptive.enabled()) {
+            return;
+        }
+        groupTimeoutMillis = reason == ReleaseReason.SIZE
+                ? Math.min(maxGroupTimeoutMillis, groupTimeoutMillis + adaptive.groupTimeoutStep().toMillis())
+                : Math.max(minGroupTimeoutMillis, (long) (groupTimeoutMillis * adaptive.decreaseFactor()));
+    }
+
+    /**
+     * The batch size only grows after a fast bulk of a batch released by {@link ReleaseReason#SIZE}; a batch
+     * released by the timeout did not fill up, so a larger limit would not be used.
+     *
+     * @param rejected whether Elasticsearch rejected any item of the bulk or the request failed
+     * @param reason   how the batch of the bulk was released, {@code null} if unknown
+     */
+    public synchronized void onBulkCompleted(Duration latency, boolean rejected, ReleaseReason reason) {
+        if (!adaptive.enabled()) {
+            return;
+        }
+        int previous = batchSize;
+        if (rejected || latency.compareTo(adaptive.targetLatency()) > 0) {
+            batchSize = Math.max(adaptive.minBatchSize(), (int) (batchSize * adaptive.decreaseFactor()));
+        } else if (reason == ReleaseReason.SIZE) {
+            batchSize = Math.min(adaptive.maxBatchSize(), batchSize + adaptive.batchSizeStep());
+        }
+
+        if (batchSize < previous) {
+            log.debug("Batch size of class {} decreased from {} to {}, bulk latency: {} ms, rejected: {}",
+                    priorityClass, previous, batchSize, latency.toMillis(), rejected);
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
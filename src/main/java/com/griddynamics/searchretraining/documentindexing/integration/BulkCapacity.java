@@ -0,0 +1,66 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+/**
+ * Concurrent bulk updates shared by the priority classes. A class holds at most its own limit of permits,
+ * and a free permit goes to a class only if no higher-ranked class below its limit is waiting, so a backlog of
+ * low-priority batches delays a high-priority batch waiting for a permit by at most the bulk updates already
+ * in flight.
+ * Bulk updates are never interrupted; pre-emption happens when a permit is handed out.
+ */
+class BulkCapacity {
+
+    private final int permits;
+
+    private final int[] limits;
+
+    private final int[] inUse;
+
+    private final int[] waiting;
+
+    private int used;
+
+    /**
+     * @param limits permits each class may hold, by rank
+     */
+    BulkCapacity(int permits, int[] limits) {
+        this.permits = permits;
+        this.limits = limits.clone();
+        this.inUse = new int[limits.length];
+        this.waiting = new int[limits.length];
+    }
+
+    synchronized void acquire(int rank) throws InterruptedException {
+        waiting[rank]++;
+        try {
+            while (!isAvailable(rank)) {
+                wait();
+            }
+        } finally {
+            waiting[rank]--;
+        }
+        inUse[rank]++;
+        used++;
+    }
+
+    synchronized void release(int rank) {
+        inUse[rank]--;
+        used--;
+        notifyAll();
+    }
+
+    synchronized int inUse(int rank) {
+        return inUse[rank];
+    }
+
+    private boolean isAvailable(int rank) {
+        if (used >= permits || inUse[rank] >= limits[rank]) {
+            return false;
+        }
+        for (int higher = 0; higher < rank; higher++) {
+            if (waiting[higher] > 0 && inUse[higher] < limits[higher]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
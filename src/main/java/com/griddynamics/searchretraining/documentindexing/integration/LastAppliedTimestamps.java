@@ -0,0 +1,174 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import com.griddynamics.searchretraining.documentindexing.config.PipelineProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * Newest event timestamp applied per {@code (id, field)}, used to drop events older than one already applied
+ * in an earlier batch. Entries live off-heap in a fixed number of 4-way buckets of 64-bit key hashes and
+ * epoch-nanosecond timestamps; a full bucket evicts its oldest entry, so the table stays bounded and a forgotten
+ * key only means an old event is let through to the Elasticsearch-side guard.
+ */
+@Component
+public class LastAppliedTimestamps {
+
+    private static final int WAYS = 4;
+
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ByteBuffer table;
+
+    private final int bucketMask;
+
+    private final Counter dropped;
+
+    private final Counter evicted;
+
+    private int size;
+
+    @Autowired
+    public LastAppliedTimestamps(PipelineProperties pipelineProperties, MeterRegistry meterRegistry) {
+        this(pipelineProperties.staleFilter().enabled() ? pipelineProperties.staleFilter().capacity() : 0, meterRegistry);
+    }
+
+    /**
+     * @param capacity number of entries, rounded up to a power of two; zero disables the table
+     */
+    LastAppliedTimestamps(int capacity, MeterRegistry meterRegistry) {
+        int neededBuckets = (capacity + WAYS - 1) / WAYS;
+        int buckets = neededBuckets <= 1 ? Math.max(0, neededBuckets) : Integer.highestOneBit(neededBuckets - 1) << 1;
+        this.table = ByteBuffer.allocateDirect(buckets * WAYS * ENTRY_BYTES);
+        this.bucketMask = buckets - 1;
+
+        this.dropped = Counter.builder("product.update.stale.dropped")
+                .description("Events dropped because a newer event for the same product field was applied before")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("product.update.stale.evicted")
+                .description("Entries evicted from the last-applied timestamp table to make room for new ones")
+                .register(meterRegistry);
+        Gauge.builder("product.update.stale.table.size", this, LastAppliedTimestamps::size)
+                .description("Product fields tracked in the last-applied timestamp table")
+                .register(meterRegistry);
+        Gauge.builder("product.update.stale.table.memory", table, ByteBuffer::capacity)
+                .description("Off-heap memory held by the last-applied timestamp table")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Checks the event against the recorded timestamp without recording it, see {@link #advance}.
+     *
+     * @return {@code true} if a newer event was applied for the field and this one should be dropped
+     */
+    public synchronized boolean isStale(String id, String field, Instant timestamp) {
+        if (table.capacity() == 0) {
+            return false;
+        }
+
+        int entry = find(key(id, field));
+        if (entry >= 0 && nanos(timestamp) < table.getLong(entry + Long.BYTES)) {
+            dropped.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the timestamp of an applied event unless a newer one is already recorded for the field.
+     * Called once the update is in Elasticsearch, so a failed bulk does not make its retry look stale.
+     */
+    public synchronized void advance(String id, String field, Instant timestamp) {
+        if (table.capacity() == 0) {
+            return;
+        }
+
+        long key = key(id, field);
+        long nanos = nanos(timestamp);
+        int entry = find(key);
+        if (entry >= 0) {
+            if (nanos > table.getLong(entry + Long.BYTES)) {
+                table.putLong(entry + Long.BYTES, nanos);
+            }
+            return;
+        }
+
+        int bucket = bucket(key);
+        int free = -1;
+        int oldest = -1;
+        for (int way = 0; way < WAYS; way++) {
+            entry = bucket + way * ENTRY_BYTES;
+            if (table.getLong(entry) == 0) {
+                free = free < 0 ? entry : free;
+            } else if (oldest < 0 || table.getLong(entry + Long.BYTES) < table.getLong(oldest + Long.BYTES)) {
+                oldest = entry;
+            }
+        }
+
+        entry = free;
+        if (entry < 0) {
+            entry = oldest;
+            evicted.increment();
+        } else {
+            size++;
+        }
+        table.putLong(entry, key);
+        table.putLong(entry + Long.BYTES, nanos);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return offset of the entry of {@code key}, or {@code -1} if it is not in its bucket
+     */
+    private int find(long key) {
+        int bucket = bucket(key);
+        for (int way = 0; way < WAYS; way++) {
+            int entry = bucket + way * ENTRY_BYTES;
+            if (table.getLong(entry) == key) {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private int bucket(long key) {
+        return ((int) (key ^ key >>> 32) & bucketMask) * WAYS * ENTRY_BYTES;
+    }
+
+    private static long nanos(Instant timestamp) {
+        return timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano();
+    }
+
+    /**
+     * 64-bit FNV-1a over both strings; zero marks a free entry and is never returned.
+     */
+    private static long key(String id, String field) {
+        long hash = FNV_OFFSET_BASIS;
+        hash = hash(hash, id);
+        hash = (hash ^ 0xffff) * FNV_PRIME;
+        hash = hash(hash, field);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long hash(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,159 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import com.griddynamics.searchretraining.documentindexing.config.PipelineProperties;
+import com.griddynamics.searchretraining.documentindexing.metrics.PipelineMetrics;
+import com.griddynamics.searchretraining.documentindexing.model.ProductDocument;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Priority classes of product updates, keyed on the updated field and ranked in configuration order.
+ * Every class has its own lanes, batch thresholds and latency timer; all classes share the bulk capacity.
+ * Fields no class lists go to the class without fields, or to an implicit lowest class named
+ * {@value #DEFAULT_CLASS} configured by the top-level lane and batch settings.
+ */
+@Component
+public class PriorityClasses {
+
+    public static final String PRIORITY_CLASS_HEADER = "priorityClass";
+
+    public static final String DEFAULT_CLASS = "default";
+
+    /**
+     * @param rank      position of the class, 0 being the highest priority
+     * @param bulkLimit bulk updates the class may run at the same time
+     * @param bulkWait  time batches of the class wait for a free bulk update
+     */
+    public record UpdateClass(int rank, String name, int lanes, int bulkLimit,
+                              AdaptiveBatchController batchController, Timer updateLatency, Timer bulkWait) {
+    }
+
+    private final List<UpdateClass> classes = new ArrayList<>();
+
+    private final Map<String, UpdateClass> classesByField = new HashMap<>();
+
+    private final UpdateClass fallback;
+
+    private final BulkCapacity bulkCapacity;
+
+    public PriorityClasses(PipelineProperties pipelineProperties, PipelineMetrics pipelineMetrics,
+                           MeterRegistry meterRegistry) {
+        int permits = pipelineProperties.maxConcurrentBulks();
+        UpdateClass catchAll = null;
+
+        for (PipelineProperties.PriorityClass properties : pipelineProperties.priorityClasses()) {
+            if (properties.bulkShare() <= 0 || properties.bulkShare() > 1) {
+                throw new IllegalArgumentException("Bulk share of priority class " + properties.name()
+                        + " must be in (0, 1]: " + properties.bulkShare());
+            }
+            UpdateClass updateClass = newClass(properties.name(), properties.lanes(),
+                    (int) Math.max(1, Math.round(properties.bulkShare() * permits)),
+                    properties.batchSize(), properties.groupTimeout(), properties.groupTimeout(),
+                    properties.latencyObjective(), pipelineProperties, pipelineMetrics, meterRegistry);
+
+            if (properties.fields().isEmpty()) {
+                if (catchAll != null) {
+                    throw new IllegalArgumentException("Only one priority class may leave its fields empty: "
+                            + catchAll.name() + ", " + properties.name());
+                }
+                catchAll = updateClass;
+            }
+            for (String field : properties.fields()) {
+                if (!ProductDocument.updatableFields().contains(field)) {
+                    throw new IllegalArgumentException("Priority class " + properties.name()
+                            + " lists a field that can not be updated: " + field);
+                }
+                UpdateClass previous = classesByField.putIfAbsent(field, updateClass);
+                if (previous != null) {
+                    throw new IllegalArgumentException("Field " + field + " is listed by priority classes "
+                            + previous.name() + " and " + properties.name());
+                }
+            }
+        }
+
+        this.fallback = catchAll != null
+                ? catchAll
+                : newClass(DEFAULT_CLASS, pipelineProperties.lanes(), permits,
+                        pipelineProperties.batchSize(), pipelineProperties.groupTimeout(),
+                        pipelineProperties.adaptive().maxGroupTimeout(), null,
+                        pipelineProperties, pipelineMetrics, meterRegistry);
+        this.bulkCapacity = new BulkCapacity(permits, classes.stream().mapToInt(UpdateClass::bulkLimit).toArray());
+
+        for (UpdateClass updateClass : classes) {
+            Gauge.builder("product.update.bulk.in.use", bulkCapacity, capacity -> capacity.inUse(updateClass.rank()))
+                    .description("Bulk updates running for the priority class")
+                    .tag("class", updateClass.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    public List<UpdateClass> all() {
+        return List.copyOf(classes);
+    }
+
+    public UpdateClass get(int rank) {
+        return classes.get(rank);
+    }
+
+    public UpdateClass classOf(String field) {
+        return classesByField.getOrDefault(field, fallback);
+    }
+
+    /**
+     * Orders intake messages by the rank of their class; messages of the same class keep their order.
+     */
+    public Comparator<Message<?>> intakeOrder() {
+        return Comparator.comparingInt(message -> message.getPayload() instanceof ProductUpdateEvent event
+                ? classOf(event.field()).rank()
+                : fallback.rank());
+    }
+
+    /**
+     * Runs {@code bulk} once the class may start another bulk update.
+     */
+    public <T> T withBulkCapacity(UpdateClass updateClass, Supplier<T> bulk) {
+        long startTime = System.nanoTime();
+        try {
+            bulkCapacity.acquire(updateClass.rank());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for bulk capacity", e);
+        }
+        updateClass.bulkWait().record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        try {
+            return bulk.get();
+        } finally {
+            bulkCapacity.release(updateClass.rank());
+        }
+    }
+
+    private UpdateClass newClass(String name, int lanes, int bulkLimit, int batchSize, Duration groupTimeout,
+                                 Duration maxGroupTimeout, Duration latencyObjective,
+                                 PipelineProperties pipelineProperties, PipelineMetrics pipelineMetrics,
+                                 MeterRegistry meterRegistry) {
+        var batchController = new AdaptiveBatchController(name, batchSize, groupTimeout, maxGroupTimeout,
+                pipelineProperties.adaptive(), meterRegistry);
+        Timer bulkWait = Timer.builder("product.update.bulk.wait")
+                .description("Time a batch waits for a free bulk update slot of its priority class")
+                .tag("class", name)
+                .register(meterRegistry);
+
+        UpdateClass updateClass = new UpdateClass(classes.size(), name, lanes, bulkLimit, batchController,
+                pipelineMetrics.updateLatency(name, latencyObjective), bulkWait);
+        classes.add(updateClass);
+        return updateClass;
+    }
+}
@@ -0,0 +1,39 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.integration.core.GenericTransformer;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the field changes of one product into a single partial document,
+ * so every product costs one bulk operation per batch.
+ */
+@Component
+public class ProductUpdateCoalescer implements GenericTransformer<List<ProductUpdateEvent>, List<ProductPartialUpdate>> {
+
+    private final Counter savedOperations;
+
+    public ProductUpdateCoalescer(MeterRegistry meterRegistry) {
+        this.savedOperations = Counter.builder("product.update.coalesced.operations")
+                .description("Bulk update operations saved by merging field changes of the same product")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<ProductPartialUpdate> transform(List<ProductUpdateEvent> productUpdateEvents) {
+        Map<String, ProductPartialUpdate> updates = new LinkedHashMap<>();
+        for (ProductUpdateEvent event : productUpdateEvents) {
+            updates.merge(event.id(), ProductPartialUpdate.of(event), ProductPartialUpdate::merge);
+        }
+
+        savedOperations.increment(productUpdateEvents.size() - updates.size());
+        return List.copyOf(updates.values());
+    }
+}
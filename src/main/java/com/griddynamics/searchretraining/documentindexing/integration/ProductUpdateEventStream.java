@@ -0,0 +1,187 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes product update events one at a time from a request body, either newline-delimited JSON or a JSON array,
+ * so the body is never held in memory. Events that cannot be decoded or lack an id, field, new value or timestamp
+ * are skipped and counted, so they never reach the pipeline; only the old value may be {@code null}.
+ * A syntax error inside a JSON array ends the stream, because the parser cannot find the next element after it.
+ */
+@Slf4j
+public abstract class ProductUpdateEventStream implements Closeable {
+
+    protected final ObjectMapper objectMapper;
+
+    private int invalid;
+
+    private int records;
+
+    private ProductUpdateEventStream(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public static ProductUpdateEventStream ndjson(InputStream inputStream, ObjectMapper objectMapper) {
+        return new NdjsonStream(inputStream, objectMapper);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the body does not start with a JSON array
+     */
+    public static ProductUpdateEventStream jsonArray(InputStream inputStream, ObjectMapper objectMapper) throws IOException {
+        return new JsonArrayStream(inputStream, objectMapper);
+    }
+
+    /**
+     * @return the next valid event, or {@code null} at the end of the stream
+     */
+    public ProductUpdateEvent next() throws IOException {
+        while (advance()) {
+            records++;
+            try {
+                ProductUpdateEvent event = decode();
+                if (isComplete(event)) {
+                    return event;
+                }
+            } catch (JsonProcessingException e) {
+                log.debug("Skipping product update: {}", e.getOriginalMessage());
+            }
+            invalid++;
+        }
+        return null;
+    }
+
+    private static boolean isComplete(ProductUpdateEvent event) {
+        return event != null
+                && event.id() != null
+                && event.field() != null
+                && event.newValue() != null
+                && event.timestamp() != null;
+    }
+
+    /**
+     * @return number of records skipped so far
+     */
+    public int invalid() {
+        return invalid;
+    }
+
+    /**
+     * @return number of records read so far, valid or not; the position of the last returned event is one less
+     */
+    public int records() {
+        return records;
+    }
+
+    /**
+     * Moves to the next record.
+     *
+     * @return {@code false} at the end of the stream
+     */
+    protected abstract boolean advance() throws IOException;
+
+    /**
+     * @return the current record as an event, or {@code null} if it is not one
+     */
+    protected abstract ProductUpdateEvent decode() throws IOException;
+
+    private static class NdjsonStream extends ProductUpdateEventStream {
+
+        private final BufferedReader reader;
+
+        private String line;
+
+        NdjsonStream(InputStream inputStream, ObjectMapper objectMapper) {
+            super(objectMapper);
+            this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        protected boolean advance() throws IOException {
+            do {
+                line = reader.readLine();
+            } while (line != null && line.isBlank());
+            return line != null;
+        }
+
+        @Override
+        protected ProductUpdateEvent decode() throws IOException {
+            return objectMapper.readValue(line, ProductUpdateEvent.class);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static class JsonArrayStream extends ProductUpdateEventStream {
+
+        private final JsonParser parser;
+
+        private boolean finished;
+
+        JsonArrayStream(InputStream inputStream, ObjectMapper objectMapper) throws IOException {
+            super(objectMapper);
+            this.parser = objectMapper.createParser(inputStream);
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                parser.close();
+                throw new IllegalArgumentException("Product updates are not a JSON array");
+            }
+        }
+
+        @Override
+        protected boolean advance() throws IOException {
+            if (finished) {
+                return false;
+            }
+            try {
+                JsonToken token = parser.nextToken();
+                finished = token == null || token == JsonToken.END_ARRAY;
+            } catch (JsonParseException e) {
+                stop(e);
+            }
+            return !finished;
+        }
+
+        @Override
+        protected ProductUpdateEvent decode() throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return null;
+            }
+            try {
+                // bound from a tree, so an element with unexpected values leaves the parser at the next element
+                JsonNode element = parser.readValueAsTree();
+                return objectMapper.treeToValue(element, ProductUpdateEvent.class);
+            } catch (JsonParseException e) {
+                stop(e);
+                throw e;
+            }
+        }
+
+        private void stop(JsonParseException e) {
+            log.warn("Malformed JSON in product updates, the rest of the body is ignored: {}", e.getOriginalMessage());
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import com.griddynamics.searchretraining.documentindexing.config.PipelineProperties;
+import com.griddynamics.searchretraining.documentindexing.journal.UpdateJournal;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits product update events into the bounded {@code productUpdateChannel}.
+ * A request is refused up front when the queue is full,
+ * and cut short when a single event cannot be queued within the send timeout.
+ * A request cut short is partially accepted: the events before {@link Result#resumeFrom()} have been queued
+ * and the producer resends only the records from there on. This is how requests with more events than the
+ * queue can hold get through, one part at a time.
+ * With the journal enabled, events are made durable before they are queued.
+ */
+@Component
+public class ProductUpdateGateway {
+
+    public enum Outcome {
+        ACCEPTED,
+        QUEUE_FULL,
+        TIMED_OUT
+    }
+
+    /**
+     * @param rejected   events not queued, including records that could not be decoded
+     * @param resumeFrom zero-based position in the request body of the first record not queued,
+     *                   {@code null} if the whole request was accepted
+     */
+    public record Result(Outcome outcome, int accepted, int rejected, Integer resumeFrom) {
+    }
+
+    private final QueueChannel productUpdateChannel;
+
+    private final PipelineProperties pipelineProperties;
+
+    private final UpdateJournal updateJournal;
+
+    private final AtomicInteger highWaterMark = new AtomicInteger();
+
+    public ProductUpdateGateway(QueueChannel productUpdateChannel,
+                                PipelineProperties pipelineProperties,
+                                UpdateJournal updateJournal,
+                                MeterRegistry meterRegistry) {
+        this.productUpdateChannel = productUpdateChannel;
+        this.pipelineProperties = pipelineProperties;
+        this.updateJournal = updateJournal;
+
+        Gauge.builder("product.update.queue.size", productUpdateChannel, QueueChannel::getQueueSize)
+                .description("Events waiting in the intake queue")
+                .register(meterRegistry);
+        Gauge.builder("product.update.queue.remaining.capacity", productUpdateChannel, QueueChannel::getRemainingCapacity)
+                .description("Events the intake queue can still accept")
+                .register(meterRegistry);
+        Gauge.builder("product.update.queue.high.water.mark", highWaterMark, AtomicInteger::get)
+                .description("Largest intake queue size observed since startup")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the events as they are decoded. With the journal enabled they are made durable
+     * in chunks of {@code pipeline.ingest-chunk-size} events before being queued.
+     * Once an event cannot be queued the rest of the stream is only counted as rejected.
+     */
+    public Result submit(ProductUpdateEventStream events) throws IOException {
+        boolean queueFull = productUpdateChannel.getRemainingCapacity() == 0;
+        int chunkSize = updateJournal.isEnabled() ? pipelineProperties.ingestChunkSize() : 1;
+        List<ProductUpdateEvent> chunk = new ArrayList<>(chunkSize);
+        int[] positions = new int[chunkSize];
+        int accepted = 0;
+        int rejected = 0;
+        Integer resumeFrom = queueFull ? 0 : null;
+
+        for (ProductUpdateEvent event = events.next(); event != null; event = events.next()) {
+            if (resumeFrom != null) {
+                rejected++;
+                continue;
+            }
+            positions[chunk.size()] = events.records() - 1;
+            chunk.add(event);
+            if (chunk.size() == chunkSize) {
+                int sent = send(chunk);
+                accepted += sent;
+                rejected += chunk.size() - sent;
+                if (sent < chunk.size()) {
+                    resumeFrom = positions[sent];
+                }
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            int sent = send(chunk);
+            accepted += sent;
+            rejected += chunk.size() - sent;
+            if (sent < chunk.size()) {
+                resumeFrom = positions[sent];
+            }
+        }
+        highWaterMark.accumulateAndGet(productUpdateChannel.getQueueSize(), Math::max);
+
+        Outcome outcome = queueFull ? Outcome.QUEUE_FULL : resumeFrom != null ? Outcome.TIMED_OUT : Outcome.ACCEPTED;
+        return new Result(outcome, accepted, rejected + events.invalid(), resumeFrom);
+    }
+
+    /**
+     * @return number of leading events queued before the first send timed out
+     */
+    private int send(List<ProductUpdateEvent> productUpdateEvents) {
+        long[] sequences = updateJournal.isEnabled() ? updateJournal.write(productUpdateEvents) : null;
+
+        long timeout = pipelineProperties.sendTimeout().toMillis();
+        int accepted = 0;
+        for (ProductUpdateEvent event : productUpdateEvents) {
+            var message = MessageBuilder.withPayload(event);
+            if (sequences != null) {
+                message.setHeader(UpdateJournal.SEQUENCE_HEADER, sequences[accepted]);
+            }
+
+            if (!productUpdateChannel.send(message.build(), timeout)) {
+                releaseRejected(sequences, accepted);
+                return accepted;
+            }
+            accepted++;
+        }
+        return accepted;
+    }
+
+    /**
+     * Rejected events are retried by the producer, so their journal entries must not be replayed.
+     */
+    private void releaseRejected(long[] sequences, int firstRejected) {
+        if (sequences == null) {
+            return;
+        }
+        for (int i = firstRejected; i < sequences.length; i++) {
+            updateJournal.acknowledge(sequences[i]);
+        }
+    }
+
+    public Duration retryAfter() {
+        return pipelineProperties.retryAfter();
+    }
+}
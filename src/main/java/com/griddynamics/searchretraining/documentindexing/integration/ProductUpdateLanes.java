@@ -0,0 +1,262 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import com.griddynamics.searchretraining.documentindexing.config.PipelineProperties;
+import com.griddynamics.searchretraining.documentindexing.journal.UpdateJournal;
+import com.griddynamics.searchretraining.documentindexing.metrics.PipelineMetrics;
+import com.griddynamics.searchretraining.documentindexing.metrics.QueueWaitInterceptor;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.dsl.IntegrationFlow;
+import org.springframework.integration.dsl.context.IntegrationFlowContext;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Partitions product updates by priority class and then by id into independent lanes.
+ * Every lane has its own queue, aggregator and single-threaded executor for the bulk update,
+ * so updates of one product field are applied in order while different lanes run concurrently.
+ * Every class polls its lanes and expires their groups on its own scheduler, so a class whose lanes are
+ * backed up does not hold up the lanes of the other classes. The intake router is shared by all classes and
+ * still waits while the lane queue an event is routed to is full.
+ * <p>
+ * A released batch also takes the events at the head of its lane queue that repeat the id and timestamp of one of
+ * its events, so events the in-batch merge would combine are not split by a group timeout into two bulk updates.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProductUpdateLanes {
+
+    private final PipelineProperties pipelineProperties;
+
+    private final IntegrationFlowContext integrationFlowContext;
+
+    private final ProductUpdatedEventTransformer transformer;
+
+    private final ProductUpdateCoalescer coalescer;
+
+    private final ProductUpdatedEventHandler handler;
+
+    private final PriorityClasses priorityClasses;
+
+    private final PipelineMetrics pipelineMetrics;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Environment environment;
+
+    /**
+     * Lanes by priority class rank.
+     */
+    private final List<List<Lane>> lanes = new ArrayList<>();
+
+    private final List<ThreadPoolTaskScheduler> schedulers = new ArrayList<>();
+
+    private record Tie(String id, Instant timestamp) {
+
+        static Tie of(Message<?> message) {
+            ProductUpdateEvent event = (ProductUpdateEvent) message.getPayload();
+            return new Tie(event.id(), event.timestamp());
+        }
+    }
+
+    record Lane(PriorityClasses.UpdateClass updateClass, int index, BlockingQueue<Message<?>> queue,
+                QueueChannel channel, QueueWaitInterceptor queueWait, ThreadPoolExecutor executor) {
+
+        String name() {
+            return updateClass.name() + "-lane-" + index;
+        }
+    }
+
+    @PostConstruct
+    void registerLanes() {
+        for (PriorityClasses.UpdateClass updateClass : priorityClasses.all()) {
+            ThreadPoolTaskScheduler scheduler = classScheduler(updateClass);
+            List<Lane> classLanes = new ArrayList<>();
+            for (int i = 0; i < updateClass.lanes(); i++) {
+                String laneName = updateClass.name() + "-lane-" + i;
+                BlockingQueue<Message<?>> queue = new LinkedBlockingQueue<>(pipelineProperties.laneCapacity());
+                QueueChannel channel = new QueueChannel(queue);
+                QueueWaitInterceptor queueWait = new QueueWaitInterceptor(pipelineMetrics.queueWait(laneName));
+                channel.addInterceptor(queueWait);
+                Lane lane = new Lane(updateClass, i, queue, channel, queueWait, laneExecutor(laneName));
+
+                integrationFlowContext.registration(laneFlow(lane, scheduler))
+                        .id("productUpdateLane-" + lane.name())
+                        .register();
+                registerGauges(lane);
+                classLanes.add(lane);
+            }
+            lanes.add(classLanes);
+            log.info("Priority class {} has been started with {} lane(s) and up to {} concurrent bulk update(s).",
+                    updateClass.name(), classLanes.size(), updateClass.bulkLimit());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lanes.forEach(classLanes -> classLanes.forEach(lane -> lane.executor().shutdown()));
+        schedulers.forEach(ThreadPoolTaskScheduler::shutdown);
+    }
+
+    public MessageChannel channelFor(ProductUpdateEvent event) {
+        List<Lane> classLanes = lanes.get(priorityClasses.classOf(event.field()).rank());
+        return classLanes.get(Math.floorMod(event.id().hashCode(), classLanes.size())).channel();
+    }
+
+    private IntegrationFlow laneFlow(Lane lane, ThreadPoolTaskScheduler scheduler) {
+        AdaptiveBatchController batchController = lane.updateClass().batchController();
+        return IntegrationFlow.from(lane.channel())
+                .aggregate(a -> a
+                        .correlationStrategy(m -> lane.index())
+                        .releaseStrategy(g -> g.size() >= batchController.batchSize())
+                        .groupTimeout(g -> batchController.groupTimeoutMillis())
+                        .sendPartialResultOnExpiry(true)
+                        .outputProcessor(group -> releaseBatch(lane, group))
+                        .taskScheduler(scheduler)
+                )
+                .channel(c -> c.executor(lane.executor()))
+                .transform(transformer)
+                .transform(coalescer)
+                .handle(handler)
+                .get();
+    }
+
+    /**
+     * Releases the events of a group as one list, carrying the priority class, the release reason and the journal
+     * sequences and event timestamps of the individual messages along so they can be acknowledged and measured
+     * after the bulk update.
+     */
+    private Message<List<ProductUpdateEvent>> releaseBatch(Lane lane, MessageGroup group) {
+        PriorityClasses.UpdateClass updateClass = lane.updateClass();
+        AdaptiveBatchController batchController = updateClass.batchController();
+        List<Message<?>> messages = new ArrayList<>(group.getMessages());
+        PipelineMetrics.ReleaseReason reason = messages.size() >= batchController.batchSize()
+                ? PipelineMetrics.ReleaseReason.SIZE
+                : PipelineMetrics.ReleaseReason.TIMEOUT;
+        takeTies(lane, messages);
+
+        List<ProductUpdateEvent> events = new ArrayList<>(messages.size());
+        List<Long> sequences = new ArrayList<>(messages.size());
+        long[] timestamps = new long[messages.size()];
+
+        for (Message<?> message : messages) {
+            ProductUpdateEvent event = (ProductUpdateEvent) message.getPayload();
+            timestamps[events.size()] = event.timestamp() != null
+                    ? event.timestamp().toEpochMilli()
+                    : System.currentTimeMillis();
+            events.add(event);
+            Long sequence = message.getHeaders().get(UpdateJournal.SEQUENCE_HEADER, Long.class);
+            if (sequence != null) {
+                sequences.add(sequence);
+            }
+        }
+
+        pipelineMetrics.recordRelease(updateClass.name(), events.size(), reason);
+        batchController.onRelease(reason);
+
+        return MessageBuilder.withPayload(events)
+                .setHeader(PriorityClasses.PRIORITY_CLASS_HEADER, updateClass.rank())
+                .setHeader(UpdateJournal.SEQUENCES_HEADER, sequences)
+                .setHeader(PipelineMetrics.EVENT_TIMESTAMPS_HEADER, timestamps)
+                .setHeader(PipelineMetrics.RELEASE_REASON_HEADER, reason)
+                .build();
+    }
+
+    /**
+     * Only the head of the queue is taken, so the order of the events of a product is kept. A message the lane
+     * poller has just received instead goes to the next group, as it would without this.
+     */
+    private void takeTies(Lane lane, List<Message<?>> messages) {
+        Set<Tie> ties = new HashSet<>();
+        messages.forEach(message -> ties.add(Tie.of(message)));
+
+        for (Message<?> next = lane.queue().peek(); next != null && ties.contains(Tie.of(next)); next = lane.queue().peek()) {
+            if (!lane.queue().remove(next)) {
+                return;
+            }
+            messages.add(lane.queueWait().postReceive(next, lane.channel()));
+        }
+    }
+
+    /**
+     * One thread per lane, so a lane blocked in {@link #awaitQueueSpace} does not stop the other lanes of the class.
+     */
+    private ThreadPoolTaskScheduler classScheduler(PriorityClasses.UpdateClass updateClass) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(updateClass.lanes());
+        scheduler.setThreadNamePrefix("product-update-" + updateClass.name() + "-poller-");
+        scheduler.initialize();
+        schedulers.add(scheduler);
+        return scheduler;
+    }
+
+    private ThreadPoolExecutor laneExecutor(String laneName) {
+        String threadNamePrefix = "product-update-" + laneName + "-";
+        ThreadFactory threadFactory = Threading.VIRTUAL.isActive(environment)
+                ? Thread.ofVirtual().name(threadNamePrefix, 0).factory()
+                : new CustomizableThreadFactory(threadNamePrefix);
+
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(pipelineProperties.lanePendingBatches()),
+                threadFactory,
+                this::awaitQueueSpace);
+    }
+
+    /**
+     * Blocks the releasing thread, a poller thread of the class, while the lane has too many batches pending,
+     * which in turn stops polling of the lane queue and propagates backpressure to the intake queue.
+     */
+    private void awaitQueueSpace(Runnable batch, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Lane executor has been shut down");
+        }
+        try {
+            executor.getQueue().put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for lane queue space", e);
+        }
+    }
+
+    private void registerGauges(Lane lane) {
+        String laneTag = String.valueOf(lane.index());
+        String classTag = lane.updateClass().name();
+
+        Gauge.builder("product.update.lane.queue.size", lane.channel(), QueueChannel::getQueueSize)
+                .description("Events waiting in the lane queue for aggregation")
+                .tag("class", classTag)
+                .tag("lane", laneTag)
+                .register(meterRegistry);
+        Gauge.builder("product.update.lane.pending.batches", lane.executor(), e -> e.getQueue().size())
+                .description("Aggregated batches waiting for the lane bulk executor")
+                .tag("class", classTag)
+                .tag("lane", laneTag)
+                .register(meterRegistry);
+    }
+}
@@ -1,23 +1,84 @@
 package com.griddynamics.searchretraining.documentindexing.integration;
 
-import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import com.griddynamics.searchretraining.documentindexing.journal.UpdateJournal;
+import com.griddynamics.searchretraining.documentindexing.metrics.PipelineMetrics;
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
 import com.griddynamics.searchretraining.documentindexing.repository.ProductIndexerRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.integration.core.GenericHandler;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
-public class ProductUpdatedEventHandler implements GenericHandler<List<ProductUpdateEvent>> {
+public class ProductUpdatedEventHandler implements GenericHandler<List<ProductPartialUpdate>> {
 
     private final ProductIndexerRepository productIndexerRepository;
 
+    private final UpdateJournal updateJournal;
+
+    private final PipelineMetrics pipelineMetrics;
+
+    private final PriorityClasses priorityClasses;
+
+    private final LastAppliedTimestamps lastAppliedTimestamps;
+
     @Override
-    public Object handle(List<ProductUpdateEvent> products, MessageHeaders headers) {
-        productIndexerRepository.updateProducts(products);
+    @SuppressWarnings("unchecked")
+    public Object handle(List<ProductPartialUpdate> updates, MessageHeaders headers) {
+        PriorityClasses.UpdateClass updateClass = priorityClasses.get(
+                headers.get(PriorityClasses.PRIORITY_CLASS_HEADER, Integer.class));
+        AdaptiveBatchController batchController = updateClass.batchController();
+        PipelineMetrics.ReleaseReason releaseReason = headers.get(PipelineMetrics.RELEASE_REASON_HEADER,
+                PipelineMetrics.ReleaseReason.class);
+
+        ProductIndexerRepository.UpdateResult result = priorityClasses.withBulkCapacity(updateClass,
+                () -> updateProducts(updates, batchController, releaseReason));
+        batchController.onBulkCompleted(result.took(), result.retriedItems() > 0, releaseReason);
+        recordApplied(updates, result.failedIds());
+
+        List<Long> sequences = headers.get(UpdateJournal.SEQUENCES_HEADER, List.class);
+        if (sequences != null) {
+            updateJournal.acknowledge(sequences);
+        }
+
+        long[] timestamps = headers.get(PipelineMetrics.EVENT_TIMESTAMPS_HEADER, long[].class);
+        if (timestamps != null) {
+            pipelineMetrics.recordAcknowledged(updateClass.updateLatency(), timestamps);
+        }
         return null;
     }
+
+    /**
+     * Only fields that reached the index are recorded, so an update that failed is not dropped as stale
+     * when its event is delivered again.
+     */
+    private void recordApplied(List<ProductPartialUpdate> updates, Set<String> failedIds) {
+        for (ProductPartialUpdate update : updates) {
+            if (!failedIds.contains(update.id())) {
+                update.fieldTimestamps().forEach((field, timestamp) ->
+                        lastAppliedTimestamps.advance(update.id(), field, timestamp));
+            }
+        }
+    }
+
+    /**
+     * Runs once the bulk capacity has been granted, so the time spent waiting for it, measured by
+     * {@code product.update.bulk.wait}, does not count as Elasticsearch latency.
+     */
+    private ProductIndexerRepository.UpdateResult updateProducts(List<ProductPartialUpdate> updates,
+                                                                 AdaptiveBatchController batchController,
+                                                                 PipelineMetrics.ReleaseReason releaseReason) {
+        long startTime = System.nanoTime();
+        try {
+            return productIndexerRepository.updateProducts(updates);
+        } catch (RuntimeException e) {
+            batchController.onBulkCompleted(Duration.ofNanos(System.nanoTime() - startTime), true, releaseReason);
+            throw e;
+        }
+    }
 }
\ No newline at end of file
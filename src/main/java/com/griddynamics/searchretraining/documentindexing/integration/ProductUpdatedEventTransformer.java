@@ -2,6 +2,7 @@ package com.griddynamics.searchretraining.documentindexing.integration;
 
 import com.griddynamics.searchretraining.documentindexing.model.ProductDocument;
 import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import lombok.RequiredArgsConstructor;
 import org.springframework.integration.core.GenericTransformer;
 import org.springframework.stereotype.Component;
 
@@ -10,8 +11,11 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
+@RequiredArgsConstructor
 public class ProductUpdatedEventTransformer implements GenericTransformer<List<ProductUpdateEvent>, List<ProductUpdateEvent>> {
 
+    private final LastAppliedTimestamps lastAppliedTimestamps;
+
     record Key(String id, String field) {
     }
 
@@ -26,6 +30,7 @@ public class ProductUpdatedEventTransformer implements GenericTransformer<List<P
                         this::mergeConsecutiveEvents
                 ))
                 .values().stream()
+                .filter(e -> !lastAppliedTimestamps.isStale(e.id(), e.field(), e.timestamp()))
                 .toList();
     }
 
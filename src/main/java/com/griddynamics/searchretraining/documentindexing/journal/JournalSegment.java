@@ -0,0 +1,145 @@
+package com.griddynamics.searchretraining.documentindexing.journal;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+/**
+ * Preallocated, memory-mapped journal file.
+ * Records are laid out as {@code [length][crc][sequence][payload]}; a zero length marks the end of the data,
+ * a checksum mismatch marks a torn write and is treated the same way.
+ */
+final class JournalSegment {
+
+    static final int RECORD_HEADER_SIZE = Integer.BYTES + Integer.BYTES + Long.BYTES;
+
+    private static final String SUFFIX = ".seg";
+
+    @FunctionalInterface
+    interface RecordConsumer {
+        void accept(long sequence, byte[] payload);
+    }
+
+    private final Path path;
+
+    private final long baseSequence;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final AtomicInteger unacknowledged = new AtomicInteger();
+
+    private volatile boolean sealed;
+
+    private JournalSegment(Path path, long baseSequence, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseSequence = baseSequence;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static JournalSegment create(Path directory, long baseSequence, int size) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseSequence, SUFFIX));
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new JournalSegment(path, baseSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+
+    static JournalSegment open(Path path) throws IOException {
+        String fileName = path.getFileName().toString();
+        long baseSequence = Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new JournalSegment(path, baseSequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+    }
+
+    static boolean isSegment(Path path) {
+        return Files.isRegularFile(path) && path.getFileName().toString().endsWith(SUFFIX);
+    }
+
+    long baseSequence() {
+        return baseSequence;
+    }
+
+    boolean hasRoom(int payloadLength) {
+        return buffer.remaining() >= RECORD_HEADER_SIZE + payloadLength;
+    }
+
+    void append(long sequence, byte[] payload) {
+        int start = buffer.position();
+        buffer.position(start + Integer.BYTES);
+        buffer.putInt(checksum(payload));
+        buffer.putLong(sequence);
+        buffer.put(payload);
+        // the length goes last so that a partially written record reads as the end of the data
+        buffer.putInt(start, payload.length);
+        unacknowledged.incrementAndGet();
+    }
+
+    void forEachRecord(RecordConsumer consumer) {
+        var reader = buffer.duplicate();
+        reader.position(0);
+
+        while (reader.remaining() >= RECORD_HEADER_SIZE) {
+            int length = reader.getInt();
+            if (length <= 0 || length > reader.remaining() - (RECORD_HEADER_SIZE - Integer.BYTES)) {
+                return;
+            }
+            int crc = reader.getInt();
+            long sequence = reader.getLong();
+            byte[] payload = new byte[length];
+            reader.get(payload);
+            if (crc != checksum(payload)) {
+                return;
+            }
+            consumer.accept(sequence, payload);
+        }
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    void seal() {
+        sealed = true;
+    }
+
+    void recordReplayed() {
+        unacknowledged.incrementAndGet();
+    }
+
+    /**
+     * @return {@code true} if this was the last unacknowledged record of a sealed segment
+     */
+    boolean acknowledge() {
+        return unacknowledged.decrementAndGet() == 0 && sealed;
+    }
+
+    boolean isReleasable() {
+        return sealed && unacknowledged.get() == 0;
+    }
+
+    int unacknowledged() {
+        return unacknowledged.get();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,364 @@
+package com.griddynamics.searchretraining.documentindexing.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.searchretraining.documentindexing.config.JournalProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of accepted update events kept in memory-mapped segments.
+ * <p>
+ * Events are acknowledged to producers only after {@link #write(List)} has made them durable;
+ * concurrent writers share one fsync per {@code journal.fsync-interval} (group commit).
+ * Every event travels through the pipeline with its sequence in the {@link #SEQUENCE_HEADER} header
+ * and is {@linkplain #acknowledge(Collection) acknowledged} once its bulk update succeeds.
+ * A sealed segment whose records are all acknowledged is deleted; records of the remaining segments
+ * are replayed on startup, so delivery is at-least-once. The replay runs in a lifecycle phase before the web server
+ * starts, so replayed events enter the pipeline ahead of any event accepted from a producer.
+ */
+@Slf4j
+@Component
+public class UpdateJournal implements SmartLifecycle {
+
+    public static final String SEQUENCE_HEADER = "journalSequence";
+
+    public static final String SEQUENCES_HEADER = "journalSequences";
+
+    private final JournalProperties journalProperties;
+
+    private final ObjectMapper objectMapper;
+
+    private final QueueChannel productUpdateChannel;
+
+    private final NavigableMap<Long, JournalSegment> segments = new ConcurrentSkipListMap<>();
+
+    private final Object durableMonitor = new Object();
+
+    private List<JournalSegment> recoveredSegments = List.of();
+
+    private Path directory;
+
+    private JournalSegment active;
+
+    private long nextSequence = 1;
+
+    private volatile long durableSequence;
+
+    private volatile boolean running;
+
+    private volatile boolean replayed;
+
+    private Thread flusher;
+
+    public UpdateJournal(JournalProperties journalProperties,
+                         ObjectMapper objectMapper,
+                         QueueChannel productUpdateChannel,
+                         MeterRegistry meterRegistry) {
+        this.journalProperties = journalProperties;
+        this.objectMapper = objectMapper;
+        this.productUpdateChannel = productUpdateChannel;
+
+        long segmentSize = journalProperties.segmentSize().toBytes();
+        if (segmentSize <= JournalSegment.RECORD_HEADER_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Journal segment size must be above " + JournalSegment.RECORD_HEADER_SIZE
+                    + " bytes and below 2GB, a segment is mapped as a single buffer: " + journalProperties.segmentSize());
+        }
+
+        Gauge.builder("product.update.journal.segments", segments, Map::size)
+                .description("Journal segments on disk")
+                .register(meterRegistry);
+        Gauge.builder("product.update.journal.unacknowledged", this, UpdateJournal::unacknowledged)
+                .description("Journaled events whose bulk update has not succeeded yet")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!isEnabled()) {
+            return;
+        }
+
+        directory = Path.of(journalProperties.directory());
+        Files.createDirectories(directory);
+        recover();
+
+        durableSequence = nextSequence - 1;
+        active = newSegment();
+        running = true;
+
+        if (!journalProperties.fsyncInterval().isZero()) {
+            flusher = Thread.ofPlatform()
+                    .name("update-journal-flusher")
+                    .daemon()
+                    .start(this::flushLoop);
+        }
+        log.info("Update journal has been opened in {}, next sequence: {}", directory.toAbsolutePath(), nextSequence);
+    }
+
+    /**
+     * Replays the recovered records; the intake flow is already started in an earlier phase and drains them.
+     */
+    @Override
+    public void start() {
+        replay();
+        replayed = true;
+    }
+
+    @Override
+    public void stop() {
+        replayed = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return replayed;
+    }
+
+    @Override
+    public int getPhase() {
+        // the web server starts at SMART_LIFECYCLE_PHASE - 1024
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE - 2048;
+    }
+
+    void replay() {
+        if (recoveredSegments.isEmpty()) {
+            return;
+        }
+
+        AtomicInteger replayed = new AtomicInteger();
+        for (JournalSegment segment : recoveredSegments) {
+            segment.forEachRecord((sequence, payload) -> {
+                productUpdateChannel.send(MessageBuilder.withPayload(deserialize(payload))
+                        .setHeader(SEQUENCE_HEADER, sequence)
+                        .build());
+                replayed.incrementAndGet();
+            });
+        }
+        recoveredSegments = List.of();
+        log.info("{} unacknowledged journal entries have been replayed.", replayed.get());
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (!running) {
+            return;
+        }
+
+        running = false;
+        if (flusher != null) {
+            LockSupport.unpark(flusher);
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+
+        for (JournalSegment segment : segments.values()) {
+            segment.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return journalProperties.enabled();
+    }
+
+    /**
+     * Appends the events and waits until they are durable.
+     *
+     * @return journal sequences of the events, in order
+     */
+    public long[] write(List<ProductUpdateEvent> productUpdateEvents) {
+        long[] sequences = new long[productUpdateEvents.size()];
+        if (sequences.length == 0) {
+            return sequences;
+        }
+
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = append(productUpdateEvents.get(i));
+        }
+        sync(sequences[sequences.length - 1]);
+        return sequences;
+    }
+
+    public void acknowledge(Collection<Long> sequences) {
+        for (Long sequence : sequences) {
+            acknowledge(sequence.longValue());
+        }
+    }
+
+    public void acknowledge(long sequence) {
+        var entry = segments.floorEntry(sequence);
+        if (entry != null && entry.getValue().acknowledge()) {
+            release(entry.getValue());
+        }
+    }
+
+    private synchronized long append(ProductUpdateEvent event) {
+        byte[] payload = serialize(event);
+        if (!active.hasRoom(payload.length)) {
+            roll(payload.length);
+        }
+
+        long sequence = nextSequence++;
+        active.append(sequence, payload);
+        return sequence;
+    }
+
+    private void sync(long sequence) {
+        if (journalProperties.fsyncInterval().isZero()) {
+            flush();
+            return;
+        }
+
+        synchronized (durableMonitor) {
+            while (durableSequence < sequence) {
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for journal fsync", e);
+                }
+            }
+        }
+    }
+
+    private void flushLoop() {
+        long intervalNanos = journalProperties.fsyncInterval().toNanos();
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Journal fsync failed", e);
+            }
+        }
+    }
+
+    private void flush() {
+        JournalSegment segment;
+        long target;
+        synchronized (this) {
+            segment = active;
+            target = nextSequence - 1;
+        }
+
+        if (target > durableSequence) {
+            segment.force();
+            markDurable(target);
+        }
+    }
+
+    private void markDurable(long sequence) {
+        synchronized (durableMonitor) {
+            if (sequence > durableSequence) {
+                durableSequence = sequence;
+            }
+            durableMonitor.notifyAll();
+        }
+    }
+
+    private void roll(int payloadLength) {
+        if (JournalSegment.RECORD_HEADER_SIZE + payloadLength > journalProperties.segmentSize().toBytes()) {
+            throw new IllegalArgumentException("Event of " + payloadLength + " bytes does not fit into a journal segment");
+        }
+
+        active.force();
+        markDurable(nextSequence - 1);
+
+        JournalSegment previous = active;
+        previous.seal();
+        active = newSegment();
+        if (previous.isReleasable()) {
+            release(previous);
+        }
+    }
+
+    private void recover() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(JournalSegment::isSegment).sorted().toList()) {
+                JournalSegment segment = JournalSegment.open(path);
+                segment.seal();
+                segment.forEachRecord((sequence, payload) -> {
+                    segment.recordReplayed();
+                    nextSequence = Math.max(nextSequence, sequence + 1);
+                });
+
+                if (segment.isReleasable()) {
+                    segment.delete();
+                } else {
+                    segments.put(segment.baseSequence(), segment);
+                }
+            }
+        }
+        recoveredSegments = List.copyOf(segments.values());
+    }
+
+    private JournalSegment newSegment() {
+        try {
+            JournalSegment segment = JournalSegment.create(directory, nextSequence,
+                    (int) journalProperties.segmentSize().toBytes());
+            segments.put(segment.baseSequence(), segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create journal segment in " + directory, e);
+        }
+    }
+
+    private void release(JournalSegment segment) {
+        if (!segments.remove(segment.baseSequence(), segment)) {
+            return;
+        }
+        try {
+            segment.delete();
+            log.debug("Journal segment {} has been checkpointed and deleted.", segment.baseSequence());
+        } catch (IOException e) {
+            log.warn("Failed to delete journal segment {}", segment.baseSequence(), e);
+        }
+    }
+
+    private int unacknowledged() {
+        return segments.values().stream()
+                .mapToInt(JournalSegment::unacknowledged)
+                .sum();
+    }
+
+    private byte[] serialize(ProductUpdateEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize update event for product " + event.id(), e);
+        }
+    }
+
+    private ProductUpdateEvent deserialize(byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, ProductUpdateEvent.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read journaled update event", e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.griddynamics.searchretraining.documentindexing.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the update pipeline and of catalog reindexing that span several components.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String EVENT_TIMESTAMPS_HEADER = "eventTimestamps";
+
+    public static final String RELEASE_REASON_HEADER = "releaseReason";
+
+    public enum ReleaseReason {
+        SIZE,
+        TIMEOUT
+    }
+
+    public enum ReindexPhase {
+        CREATE(false),
+        LOAD(true),
+        ALIAS(false),
+        CLEANUP(false);
+
+        private final boolean processesDocuments;
+
+        ReindexPhase(boolean processesDocuments) {
+            this.processesDocuments = processesDocuments;
+        }
+
+        /**
+         * Only such phases publish {@code reindex.phase.throughput}; for the others it would be a constant zero
+         * or the throughput of an earlier phase.
+         */
+        public boolean processesDocuments() {
+            return processesDocuments;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+
+    public PipelineMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param latencyObjective service level objective exposed as a histogram bucket, may be {@code null}
+     */
+    public Timer updateLatency(String priorityClass, Duration latencyObjective) {
+        Timer.Builder builder = Timer.builder("product.update.latency")
+                .description("Time from the event timestamp until its bulk update is acknowledged by Elasticsearch")
+                .tag("class", priorityClass)
+                .publishPercentileHistogram();
+        if (latencyObjective != null) {
+            builder.serviceLevelObjectives(latencyObjective);
+        }
+        return builder.register(meterRegistry);
+    }
+
+    public Timer queueWait(String channel) {
+        return Timer.builder("product.update.queue.wait")
+                .description("Time an event spends in a pipeline queue")
+                .tag("channel", channel)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public void recordRelease(String priorityClass, int size, ReleaseReason reason) {
+        DistributionSummary.builder("product.update.batch.size")
+                .description("Events per aggregated batch, by release reason")
+                .tag("class", priorityClass)
+                .tag("reason", reason.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(size);
+    }
+
+    /**
+     * @param updateLatency   latency timer of the priority class of the events
+     * @param eventTimestamps epoch milliseconds of the acknowledged events
+     */
+    public void recordAcknowledged(Timer updateLatency, long[] eventTimestamps) {
+        long now = System.currentTimeMillis();
+        for (long timestamp : eventTimestamps) {
+            updateLatency.record(Math.max(0, now - timestamp), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param documents catalog documents processed by the phase, ignored unless it {@linkplain
+     *                  ReindexPhase#processesDocuments() processes documents}
+     */
+    public void recordReindexPhase(ReindexPhase phase, Duration duration, long documents) {
+        String phaseTag = phase.name().toLowerCase();
+
+        Timer.builder("reindex.phase.duration")
+                .description("Duration of a catalog reindex phase")
+                .tag("phase", phaseTag)
+                .register(meterRegistry)
+                .record(duration);
+        if (!phase.processesDocuments()) {
+            return;
+        }
+        DistributionSummary.builder("reindex.phase.throughput")
+                .description("Catalog documents per second of a reindex phase")
+                .baseUnit("documents/s")
+                .tag("phase", phaseTag)
+                .register(meterRegistry)
+                .record(documents * 1000.0 / Math.max(1, duration.toMillis()));
+    }
+}
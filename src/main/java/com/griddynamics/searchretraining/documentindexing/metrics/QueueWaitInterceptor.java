@@ -0,0 +1,37 @@
+package com.griddynamics.searchretraining.documentindexing.metrics;
+
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long messages stay in a pollable channel.
+ */
+@RequiredArgsConstructor
+public class QueueWaitInterceptor implements ChannelInterceptor {
+
+    private static final String ENQUEUED_AT_HEADER = "enqueuedAt";
+
+    private final Timer waitTimer;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        return MessageBuilder.fromMessage(message)
+                .setHeader(ENQUEUED_AT_HEADER, System.nanoTime())
+                .build();
+    }
+
+    @Override
+    public Message<?> postReceive(Message<?> message, MessageChannel channel) {
+        Long enqueuedAt = message.getHeaders().get(ENQUEUED_AT_HEADER, Long.class);
+        if (enqueuedAt != null) {
+            waitTimer.record(System.nanoTime() - enqueuedAt, TimeUnit.NANOSECONDS);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,17 @@
+package com.griddynamics.searchretraining.documentindexing.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * {@code resumeFrom} is set when the request was not, or only partially, accepted: the events before that
+ * zero-based record position have been queued, and the producer resends the records from it on after the
+ * {@code Retry-After} delay. {@code rejected} also counts the records that could not be decoded.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AsyncUpdateResponse(
+        Integer accepted,
+        Integer rejected,
+        Integer resumeFrom
+) {
+
+}
@@ -0,0 +1,17 @@
+package com.griddynamics.searchretraining.documentindexing.model;
+
+/**
+ * Outcome of reading one part of the catalog.
+ *
+ * @param documents documents read from the file and handed over to the bulk requests
+ * @param rejected  documents skipped because they failed validation
+ * @param failure   why the file could not be read to its end, {@code null} if it was
+ */
+public record CatalogFileReport(
+        String file,
+        int documents,
+        int rejected,
+        long durationMillis,
+        String failure
+) {
+}
@@ -0,0 +1,10 @@
+package com.griddynamics.searchretraining.documentindexing.model;
+
+import java.util.List;
+
+public record DeadLetterReplayResponse(
+        Integer replayed,
+        List<ProductIndexError> errors
+) {
+
+}
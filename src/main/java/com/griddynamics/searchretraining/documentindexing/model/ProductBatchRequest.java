@@ -0,0 +1,10 @@
+package com.griddynamics.searchretraining.documentindexing.model;
+
+import java.util.List;
+
+public record ProductBatchRequest(
+        List<String> ids,
+        List<String> fields
+) {
+
+}
@@ -34,6 +34,23 @@ public record ProductDocument(
         );
     }
 
+    public static Set<String> allFields() {
+        return Set.of(
+                ProductDocument.Fields.ID,
+                ProductDocument.Fields.NAME,
+                ProductDocument.Fields.DESCRIPTION,
+                ProductDocument.Fields.CATEGORY,
+                ProductDocument.Fields.BRAND,
+                ProductDocument.Fields.PRICE,
+                ProductDocument.Fields.CURRENCY,
+                ProductDocument.Fields.AVAILABLE,
+                ProductDocument.Fields.STOCK,
+                ProductDocument.Fields.COLOR,
+                ProductDocument.Fields.SIZE,
+                ProductDocument.Fields.LAST_UPDATED
+        );
+    }
+
     public static final class Fields {
         public static final String ID = "id";
         public static final String NAME = "name";
@@ -0,0 +1,50 @@
+package com.griddynamics.searchretraining.documentindexing.model;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Changed fields of one product, with the timestamp of the event that set each field.
+ */
+public record ProductPartialUpdate(
+        String id,
+        Map<String, String> fields,
+        Instant lastUpdated,
+        Map<String, Instant> fieldTimestamps
+) {
+
+    public ProductPartialUpdate(String id, Map<String, String> fields, Instant lastUpdated) {
+        this(id, fields, lastUpdated, timestamps(fields, lastUpdated));
+    }
+
+    public static ProductPartialUpdate of(ProductUpdateEvent event) {
+        return new ProductPartialUpdate(event.id(), Map.of(event.field(), event.newValue()), event.timestamp());
+    }
+
+    public ProductPartialUpdate merge(ProductPartialUpdate other) {
+        Map<String, String> mergedFields = new HashMap<>(fields);
+        Map<String, Instant> mergedTimestamps = new HashMap<>(fieldTimestamps);
+        other.fields().forEach((field, value) -> {
+            Instant timestamp = other.fieldTimestamps().get(field);
+            Instant current = mergedTimestamps.get(field);
+            if (current == null || !current.isAfter(timestamp)) {
+                mergedFields.put(field, value);
+                mergedTimestamps.put(field, timestamp);
+            }
+        });
+
+        return new ProductPartialUpdate(
+                id,
+                mergedFields,
+                lastUpdated.isAfter(other.lastUpdated()) ? lastUpdated : other.lastUpdated(),
+                mergedTimestamps
+        );
+    }
+
+    private static Map<String, Instant> timestamps(Map<String, String> fields, Instant timestamp) {
+        Map<String, Instant> timestamps = new HashMap<>();
+        fields.keySet().forEach(field -> timestamps.put(field, timestamp));
+        return timestamps;
+    }
+}
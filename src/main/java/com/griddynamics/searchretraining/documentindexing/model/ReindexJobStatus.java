@@ -0,0 +1,49 @@
+package com.griddynamics.searchretraining.documentindexing.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Snapshot of a background reindex.
+ *
+ * @param phase                 {@code CREATE}, {@code LOAD}, {@code ALIAS} or {@code CLEANUP}
+ * @param documentsSent         index and delete operations handed to bulk requests so far
+ * @param documentsAcknowledged operations Elasticsearch has responded to, including failed ones
+ * @param documentsPerSecond    acknowledged operations per second recently, the average once the job has finished
+ * @param etaSeconds            estimated time until the catalog is loaded, only known while loading
+ * @param errors                the first document errors; {@code errorCount} counts all of them
+ * @param result                response of the reindex once it has succeeded
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReindexJobStatus(
+        String id,
+        String alias,
+        String mode,
+        State state,
+        String phase,
+        Instant startedAt,
+        Instant finishedAt,
+        long documentsSent,
+        long documentsAcknowledged,
+        double documentsPerSecond,
+        Long etaSeconds,
+        long errorCount,
+        List<ProductIndexError> errors,
+        String failure,
+        UpdateCatalogResponse result
+) {
+
+    public enum State {
+        RUNNING,
+        CANCELLING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED;
+
+        public boolean isFinished() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+}
@@ -1,10 +1,34 @@
 package com.griddynamics.searchretraining.documentindexing.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
+/**
+ * The change counts are reported by the delta reindex only; new documents are counted as changed
+ * and {@code count} is the number of index and delete operations sent.
+ * {@code files} lists the catalog parts read when the catalog is made of more than one file.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record UpdateCatalogResponse(
         Integer count,
-        List<ProductIndexError> errors
+        List<ProductIndexError> errors,
+        Integer unchanged,
+        Integer changed,
+        Integer deleted,
+        List<CatalogFileReport> files
 ) {
 
+    public UpdateCatalogResponse(Integer count, List<ProductIndexError> errors) {
+        this(count, errors, null, null, null, null);
+    }
+
+    public UpdateCatalogResponse(Integer count, List<ProductIndexError> errors,
+                                 Integer unchanged, Integer changed, Integer deleted) {
+        this(count, errors, unchanged, changed, deleted, null);
+    }
+
+    public UpdateCatalogResponse withFiles(List<CatalogFileReport> files) {
+        return new UpdateCatalogResponse(count, errors, unchanged, changed, deleted, files);
+    }
 }
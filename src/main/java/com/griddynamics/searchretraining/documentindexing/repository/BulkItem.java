@@ -0,0 +1,155 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.json.JsonData;
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.griddynamics.searchretraining.documentindexing.model.ProductDocument.Fields.LAST_UPDATED;
+
+/**
+ * Single operation of a bulk request, kept in a form that can be resent and written to the dead-letter file.
+ * {@code sizeInBytes} is the size of the document source, or an estimate of it; zero if unknown.
+ */
+record BulkItem(
+        String index,
+        String id,
+        Action action,
+        Object document,
+        long sizeInBytes
+) {
+
+    /**
+     * Rough allowance for the action line and JSON punctuation of a partial update.
+     */
+    private static final int UPDATE_OVERHEAD_BYTES = 96;
+
+    private static final int EPOCH_MILLIS_BYTES = 16;
+
+    /**
+     * Updates of different fields of a product may run in concurrent bulks of different priority classes;
+     * both partial documents and the per-field guarded script can be reapplied after a version conflict.
+     */
+    private static final int RETRY_ON_CONFLICT = 3;
+
+    /**
+     * Applies a field only if its event is not older than the one that last set it, so a stale event
+     * loses even if it reaches Elasticsearch. The timestamps are kept in the unindexed {@code fieldTimestamps} object.
+     */
+    static final String GUARDED_UPDATE_SCRIPT = """
+            if (ctx._source.fieldTimestamps == null) {
+                ctx._source.fieldTimestamps = new HashMap();
+            }
+            boolean changed = false;
+            for (entry in params.fields.entrySet()) {
+                long timestamp = ((Number) params.timestamps[entry.getKey()]).longValue();
+                def applied = ctx._source.fieldTimestamps[entry.getKey()];
+                if (applied == null || ((Number) applied).longValue() <= timestamp) {
+                    ctx._source[entry.getKey()] = entry.getValue();
+                    ctx._source.fieldTimestamps[entry.getKey()] = timestamp;
+                    changed = true;
+                }
+            }
+            if (changed) {
+                ctx._source.lastUpdated = params.lastUpdated;
+            } else {
+                ctx.op = 'noop';
+            }
+            """;
+
+    private static final String FIELDS = "fields";
+
+    private static final String TIMESTAMPS = "timestamps";
+
+    enum Action {
+        INDEX,
+        UPDATE,
+        GUARDED_UPDATE,
+        DELETE
+    }
+
+    static BulkItem index(String index, String id, Object document, long sizeInBytes) {
+        return new BulkItem(index, id, Action.INDEX, document, sizeInBytes);
+    }
+
+    static BulkItem delete(String index, String id) {
+        return new BulkItem(index, id, Action.DELETE, null, 0);
+    }
+
+    /**
+     * @param guarded whether to apply the update with {@link #GUARDED_UPDATE_SCRIPT}; the document
+     *                then holds the script parameters instead of the partial document
+     */
+    static BulkItem update(String index, ProductPartialUpdate update, boolean guarded) {
+        long sizeInBytes = UPDATE_OVERHEAD_BYTES + update.id().length();
+        for (Map.Entry<String, String> field : update.fields().entrySet()) {
+            sizeInBytes += field.getKey().length() + field.getValue().length();
+        }
+
+        if (guarded) {
+            // the script is sent inline with every item, and each field carries its name again with a timestamp
+            sizeInBytes += GUARDED_UPDATE_SCRIPT.length();
+            for (String field : update.fields().keySet()) {
+                sizeInBytes += field.length() + EPOCH_MILLIS_BYTES;
+            }
+
+            Map<String, Long> timestamps = new HashMap<>();
+            update.fieldTimestamps().forEach((field, timestamp) -> timestamps.put(field, timestamp.toEpochMilli()));
+
+            Map<String, Object> params = new HashMap<>();
+            params.put(FIELDS, update.fields());
+            params.put(TIMESTAMPS, timestamps);
+            params.put(LAST_UPDATED, update.lastUpdated().toString());
+            return new BulkItem(index, update.id(), Action.GUARDED_UPDATE, params, sizeInBytes);
+        }
+
+        Map<String, Object> doc = new HashMap<>(update.fields());
+        doc.put(LAST_UPDATED, update.lastUpdated());
+        return new BulkItem(index, update.id(), Action.UPDATE, doc, sizeInBytes);
+    }
+
+    BulkOperation toOperation() {
+        return switch (action) {
+            case INDEX -> BulkOperation.of(b -> b
+                    .index(i -> i
+                            .index(index)
+                            .id(id)
+                            .document(document)
+                    ));
+            case UPDATE -> BulkOperation.of(b -> b
+                    .update(u -> u
+                            .index(index)
+                            .id(id)
+                            .retryOnConflict(RETRY_ON_CONFLICT)
+                            .action(a -> a
+                                    .doc(document)
+                            )
+                    ));
+            case GUARDED_UPDATE -> BulkOperation.of(b -> b
+                    .update(u -> u
+                            .index(index)
+                            .id(id)
+                            .retryOnConflict(RETRY_ON_CONFLICT)
+                            .action(a -> a
+                                    .script(s -> s
+                                            .source(GUARDED_UPDATE_SCRIPT)
+                                            .params(scriptParams())
+                                    )
+                            )
+                    ));
+            case DELETE -> BulkOperation.of(b -> b
+                    .delete(d -> d
+                            .index(index)
+                            .id(id)
+                    ));
+        };
+    }
+
+    private Map<String, JsonData> scriptParams() {
+        Map<String, JsonData> params = new HashMap<>();
+        ((Map<?, ?>) document).forEach((name, value) -> params.put(name.toString(), JsonData.of(value)));
+        return params;
+    }
+}
@@ -0,0 +1,200 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ProductIndexError;
+import com.griddynamics.searchretraining.documentindexing.model.UpdateCatalogResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Accumulates catalog documents into bulk requests of bounded document count and byte size
+ * and sends them with at most {@link IndexProperties.Bulk#maxConcurrentRequests()} requests in flight,
+ * either from a pool of sending threads or, in asynchronous mode, pipelined on the asynchronous client.
+ * Documents may be added from several threads reading catalog parts; they are only collected into the
+ * pending request under the lock, and a thread that fills a request sends it, or waits for a free slot, outside of it.
+ */
+@Slf4j
+class CatalogBulkIndexer implements AutoCloseable {
+
+    private final RetryingBulkExecutor bulkExecutor;
+
+    private final IndexProperties.Bulk settings;
+
+    private final String indexName;
+
+    private final ReindexProgress progress;
+
+    private final ExecutorService executor;
+
+    private final Semaphore inFlight;
+
+    private final AtomicInteger itemsCount = new AtomicInteger();
+
+    private final Queue<ProductIndexError> errors = new ConcurrentLinkedQueue<>();
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private List<BulkItem> pending = new ArrayList<>();
+
+    private long pendingBytes;
+
+    CatalogBulkIndexer(RetryingBulkExecutor bulkExecutor, IndexProperties.Bulk settings, String indexName,
+                       IndexProperties.ClientMode clientMode, ReindexProgress progress) {
+        this.bulkExecutor = bulkExecutor;
+        this.settings = settings;
+        this.indexName = indexName;
+        this.progress = progress;
+        this.executor = clientMode == IndexProperties.ClientMode.SYNC
+                ? Executors.newFixedThreadPool(settings.maxConcurrentRequests(), new CustomizableThreadFactory("catalog-bulk-"))
+                : null;
+        this.inFlight = new Semaphore(settings.maxConcurrentRequests());
+    }
+
+    void add(String id, Object document, long sizeInBytes) {
+        append(BulkItem.index(indexName, id, document, sizeInBytes));
+    }
+
+    void delete(String id) {
+        append(BulkItem.delete(indexName, id));
+    }
+
+    void reject(ProductIndexError error) {
+        errors.add(error);
+        progress.failed(error);
+    }
+
+    UpdateCatalogResponse finish() {
+        flush();
+        awaitInFlight();
+        throwIfFailed();
+
+        return new UpdateCatalogResponse(itemsCount.get(), new ArrayList<>(errors));
+    }
+
+    /**
+     * Waits for the bulk requests in flight, also after a failure, so that none of them reaches the index
+     * after the caller has deleted it. Documents still pending are dropped.
+     */
+    @Override
+    public void close() {
+        try {
+            awaitInFlight();
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private void append(BulkItem item) {
+        throwIfFailed();
+
+        List<BulkItem> items = null;
+        synchronized (this) {
+            pending.add(item);
+            pendingBytes += item.sizeInBytes();
+
+            if (pending.size() >= settings.maxDocuments() || pendingBytes >= settings.maxSize().toBytes()) {
+                items = takePending();
+            }
+        }
+        if (items != null) {
+            send(items);
+        }
+    }
+
+    private void flush() {
+        List<BulkItem> items;
+        synchronized (this) {
+            items = takePending();
+        }
+        if (!items.isEmpty()) {
+            send(items);
+        }
+    }
+
+    private List<BulkItem> takePending() {
+        List<BulkItem> items = pending;
+        pending = new ArrayList<>();
+        pendingBytes = 0;
+        return items;
+    }
+
+    private void send(List<BulkItem> items) {
+        acquireSlot();
+        progress.sent(items.size());
+        if (executor == null) {
+            bulkExecutor.executeAsync(items, null).whenComplete((result, e) -> {
+                try {
+                    if (e != null) {
+                        onFailure(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    } else {
+                        onSent(result);
+                    }
+                } finally {
+                    inFlight.release();
+                }
+            });
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                onSent(bulkExecutor.execute(items, null));
+            } catch (Exception e) {
+                onFailure(e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void onSent(RetryingBulkExecutor.BulkResult result) {
+        itemsCount.addAndGet(result.itemsCount());
+        errors.addAll(result.errors());
+        progress.acknowledged(result.itemsCount(), result.errors());
+
+        log.debug("Bulk of {} documents has been sent to index {}", result.itemsCount(), indexName);
+    }
+
+    private void onFailure(Throwable e) {
+        log.error("An exception occurred during bulk bulkData processing", e);
+        failure.compareAndSet(null, e instanceof Exception exception ? exception : new RuntimeException(e));
+    }
+
+    private void acquireSlot() {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a bulk request slot", e);
+        }
+    }
+
+    private void awaitInFlight() {
+        try {
+            inFlight.acquire(settings.maxConcurrentRequests());
+            inFlight.release(settings.maxConcurrentRequests());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for bulk requests to complete", e);
+        }
+    }
+
+    private void throwIfFailed() {
+        Exception e = failure.get();
+        if (e != null) {
+            throw new RuntimeException("Bulk indexing failed for index: " + indexName, e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.Consumer;
+
+/**
+ * Content fingerprints of the catalog documents sent by the last successful load, used by the delta reindex.
+ * The file stores every id with the 64-bit FNV-1a hash of its document. In memory only the hash of the id
+ * and the content hash are kept in an open-addressing table, so ids of vanished documents are found by
+ * reading the file a second time.
+ */
+class CatalogFingerprints {
+
+    private static final int MAGIC = 0x43465031;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    private long[] idHashes = new long[INITIAL_CAPACITY];
+
+    private long[] contentHashes = new long[INITIAL_CAPACITY];
+
+    private long[] seen = new long[INITIAL_CAPACITY / 64];
+
+    private int size;
+
+    static long hash(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    static long hash(ByteBuffer bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            hash ^= bytes.get(i) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    static CatalogFingerprints load(Path file) throws IOException {
+        CatalogFingerprints fingerprints = new CatalogFingerprints();
+        read(file, (id, contentHash) -> fingerprints.put(idHash(id), contentHash));
+        return fingerprints;
+    }
+
+    static Writer writer(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Marks the id as present in the current catalog.
+     *
+     * @return whether the document is unchanged since the previous load
+     */
+    boolean markSeen(String id, long contentHash) {
+        int slot = slotOf(idHash(id));
+        if (idHashes[slot] == 0) {
+            return false;
+        }
+        seen[slot >>> 6] |= 1L << slot;
+        return contentHashes[slot] == contentHash;
+    }
+
+    /**
+     * Reads the ids from the fingerprint file again and hands over the ones not seen in the current catalog.
+     */
+    void forEachUnseen(Path file, Consumer<String> consumer) throws IOException {
+        read(file, (id, contentHash) -> {
+            int slot = slotOf(idHash(id));
+            if ((seen[slot >>> 6] & 1L << slot) == 0) {
+                consumer.accept(id);
+            }
+        });
+    }
+
+    private void put(long idHash, long contentHash) {
+        if (size + 1 > idHashes.length * 3L / 4) {
+            grow();
+        }
+        int slot = slotOf(idHash);
+        if (idHashes[slot] == 0) {
+            idHashes[slot] = idHash;
+            size++;
+        }
+        contentHashes[slot] = contentHash;
+    }
+
+    private int slotOf(long idHash) {
+        int mask = idHashes.length - 1;
+        int slot = (int) (idHash ^ idHash >>> 32) & mask;
+        while (idHashes[slot] != 0 && idHashes[slot] != idHash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldIdHashes = idHashes;
+        long[] oldContentHashes = contentHashes;
+
+        idHashes = new long[oldIdHashes.length * 2];
+        contentHashes = new long[oldContentHashes.length * 2];
+        seen = new long[idHashes.length / 64];
+        for (int i = 0; i < oldIdHashes.length; i++) {
+            if (oldIdHashes[i] != 0) {
+                int slot = slotOf(oldIdHashes[i]);
+                idHashes[slot] = oldIdHashes[i];
+                contentHashes[slot] = oldContentHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Zero marks an empty slot, so an id hashing to zero shares the slot of ids hashing to one.
+     */
+    private static long idHash(String id) {
+        long hash = hash(id.getBytes(StandardCharsets.UTF_8));
+        return hash == 0 ? 1 : hash;
+    }
+
+    @FunctionalInterface
+    private interface RecordConsumer {
+        void accept(String id, long contentHash);
+    }
+
+    private static void read(Path file, RecordConsumer consumer) throws IOException {
+        try (var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a catalog fingerprint file: " + file);
+            }
+            while (true) {
+                String id;
+                try {
+                    id = input.readUTF();
+                } catch (EOFException e) {
+                    return;
+                }
+                consumer.accept(id, input.readLong());
+            }
+        }
+    }
+
+    /**
+     * Writes the fingerprints of a load next to {@code file} and replaces it only on {@link #commit()},
+     * so a failed load keeps the fingerprints of the previous one.
+     */
+    static class Writer implements Closeable {
+
+        private final Path file;
+
+        private final Path temporaryFile;
+
+        private final DataOutputStream output;
+
+        private boolean committed;
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            this.temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)));
+            output.writeInt(MAGIC);
+        }
+
+        void add(String id, long contentHash) throws IOException {
+            output.writeUTF(id);
+            output.writeLong(contentHash);
+        }
+
+        void commit() throws IOException {
+            output.close();
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                output.close();
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ProductDocument;
+import com.griddynamics.searchretraining.documentindexing.model.ProductIndexError;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.griddynamics.searchretraining.documentindexing.model.ProductDocument.Fields.ID;
+
+/**
+ * Reads a catalog, either a JSON array or newline-delimited JSON documents, one document at a time
+ * with the Jackson streaming parser.
+ * By default every document is materialized as a map. In pass-through mode the raw bytes of the document are
+ * sliced out of the input and handed over as {@link BinaryData}; only {@code id} is taken from the token stream.
+ */
+@Slf4j
+class CatalogReader {
+
+    private static final TypeReference<Map<String, Object>> DOCUMENT_TYPE = new TypeReference<>() {
+    };
+
+    @FunctionalInterface
+    interface DocumentConsumer {
+        void accept(String id, Object document, long sizeInBytes) throws IOException;
+    }
+
+    private final ObjectMapper objectMapper;
+
+    private final boolean passThrough;
+
+    private final ObjectReader validator;
+
+    CatalogReader(ObjectMapper objectMapper) {
+        this(objectMapper, new IndexProperties.PassThrough(false, false));
+    }
+
+    CatalogReader(ObjectMapper objectMapper, IndexProperties.PassThrough passThrough) {
+        this.objectMapper = objectMapper;
+        this.passThrough = passThrough.enabled();
+        this.validator = passThrough.validate() ? objectMapper.readerFor(ProductDocument.class) : null;
+    }
+
+    void read(InputStream inputStream, String source, DocumentConsumer consumer) throws IOException {
+        read(inputStream, source, consumer, error ->
+                log.warn("Skipping invalid doc Id: {}, Error: {}", error.productId(), error.reason()));
+    }
+
+    /**
+     * @param rejected receives the documents without an id and, in pass-through mode, the ones failing validation
+     */
+    void read(InputStream inputStream, String source, DocumentConsumer consumer,
+              Consumer<ProductIndexError> rejected) throws IOException {
+        if (passThrough) {
+            readRaw(new SlicingInputStream(inputStream), source, consumer, rejected);
+            return;
+        }
+
+        try (JsonParser parser = objectMapper.createParser(inputStream)) {
+            for (JsonToken token = firstDocument(parser, source); token == JsonToken.START_OBJECT; token = parser.nextToken()) {
+                long startOffset = parser.currentTokenLocation().getByteOffset();
+                Map<String, Object> doc = objectMapper.readValue(parser, DOCUMENT_TYPE);
+                long sizeInBytes = parser.currentLocation().getByteOffset() - startOffset;
+
+                Object id = doc.get(ID);
+                if (id == null) {
+                    rejected.accept(missingId(source, startOffset));
+                    continue;
+                }
+
+                consumer.accept(id.toString(), doc, sizeInBytes);
+            }
+        }
+    }
+
+    private void readRaw(SlicingInputStream inputStream, String source, DocumentConsumer consumer,
+                         Consumer<ProductIndexError> rejected) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(inputStream)) {
+            for (JsonToken token = firstDocument(parser, source); token == JsonToken.START_OBJECT; token = parser.nextToken()) {
+                long startOffset = parser.currentTokenLocation().getByteOffset();
+                inputStream.keepFrom(startOffset);
+
+                String id = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    boolean isId = ID.equals(parser.currentName());
+                    JsonToken value = parser.nextToken();
+                    if (isId && value.isScalarValue()) {
+                        id = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                byte[] document = inputStream.slice(startOffset, parser.currentLocation().getByteOffset());
+
+                if (id == null) {
+                    rejected.accept(missingId(source, startOffset));
+                    continue;
+                }
+                if (validator != null) {
+                    try {
+                        validator.readValue(document);
+                    } catch (JsonProcessingException e) {
+                        rejected.accept(new ProductIndexError(id, e.getOriginalMessage()));
+                        continue;
+                    }
+                }
+
+                consumer.accept(id, BinaryData.of(document, ContentType.APPLICATION_JSON), document.length);
+            }
+        }
+    }
+
+    private static ProductIndexError missingId(String source, long offset) {
+        return new ProductIndexError(null, "Document without 'id' at byte offset " + offset + " of " + source);
+    }
+
+    /**
+     * Documents are either the elements of a top-level array or a sequence of top-level objects.
+     */
+    private static JsonToken firstDocument(JsonParser parser, String source) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.START_ARRAY) {
+            return parser.nextToken();
+        }
+        if (token == JsonToken.START_OBJECT || token == null) {
+            return token;
+        }
+        throw new IllegalArgumentException("Bulk data is neither a JSON array nor NDJSON: " + source);
+    }
+
+    /**
+     * Keeps the bytes read by the parser from the start of the current document on,
+     * so the document can be copied out once the parser has reached its end.
+     */
+    private static class SlicingInputStream extends FilterInputStream {
+
+        private final byte[] single = new byte[1];
+
+        private byte[] buffer = new byte[64 * 1024];
+
+        private long bufferOffset;
+
+        private int length;
+
+        private long keepFrom;
+
+        SlicingInputStream(InputStream in) {
+            super(in);
+        }
+
+        void keepFrom(long offset) {
+            keepFrom = offset;
+        }
+
+        byte[] slice(long from, long to) {
+            return Arrays.copyOfRange(buffer, (int) (from - bufferOffset), (int) (to - bufferOffset));
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                append(b, off, read);
+            }
+            return read;
+        }
+
+        private void append(byte[] b, int off, int len) {
+            if (length + len > buffer.length) {
+                // drop the bytes of the documents already sliced before growing
+                int dropped = (int) Math.max(0, Math.min(keepFrom - bufferOffset, length));
+                System.arraycopy(buffer, dropped, buffer, 0, length - dropped);
+                bufferOffset += dropped;
+                length -= dropped;
+                if (length + len > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + len));
+                }
+            }
+            System.arraycopy(b, off, buffer, length, len);
+            length += len;
+        }
+    }
+}
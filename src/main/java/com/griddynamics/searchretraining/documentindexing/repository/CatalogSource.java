@@ -0,0 +1,216 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import com.griddynamics.searchretraining.documentindexing.model.CatalogFileReport;
+import com.griddynamics.searchretraining.documentindexing.model.ProductIndexError;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternUtils;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The files making up the catalog: a single resource, every file of a directory, or the files matching a pattern
+ * such as {@code file:data/catalog/part-*.json.gz}. Parts ending with {@code .gz} are decompressed while read.
+ * The parts are read in parallel, so the consumers handed to {@link #read} have to be thread-safe.
+ */
+@Slf4j
+class CatalogSource {
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    private final String location;
+
+    private final List<Resource> parts;
+
+    private CatalogSource(String location, List<Resource> parts) {
+        this.location = location;
+        this.parts = parts;
+    }
+
+    static CatalogSource resolve(ResourceLoader resourceLoader, String location) throws IOException {
+        Resource[] resources = ResourcePatternUtils.getResourcePatternResolver(resourceLoader).getResources(location);
+
+        List<Resource> parts;
+        if (resources.length == 1 && resources[0].isFile() && resources[0].getFile().isDirectory()) {
+            parts = listDirectory(resources[0].getFile().toPath());
+        } else {
+            parts = Arrays.stream(resources)
+                    .filter(Resource::isReadable)
+                    .sorted(Comparator.comparing(CatalogSource::name))
+                    .toList();
+        }
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("Resource not found: " + location);
+        }
+        return new CatalogSource(location, parts);
+    }
+
+    boolean isMultiPart() {
+        return parts.size() > 1;
+    }
+
+    /**
+     * @return size of all parts as stored, compressed or not, or {@code -1} if the size of a part is unknown
+     */
+    long size() {
+        long size = 0;
+        for (Resource part : parts) {
+            try {
+                size += part.contentLength();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reads every part on up to {@code workers} threads. Parts that fail to read do not stop the others;
+     * once all parts have been read an exception lists the failed ones. If the consumer throws, the exception
+     * is rethrown only after all reading threads have stopped.
+     *
+     * @param bytesRead receives the number of bytes read from the parts as stored
+     * @return the reports of the parts in file name order
+     * @throws IllegalStateException if any part could not be read to its end
+     */
+    List<CatalogFileReport> read(CatalogReader reader, int workers, CatalogReader.DocumentConsumer consumer,
+                                 Consumer<ProductIndexError> rejected, LongConsumer bytesRead) {
+        List<CatalogFileReport> reports;
+        if (parts.size() == 1 || workers <= 1) {
+            reports = parts.stream().map(part -> readPart(part, reader, consumer, rejected, bytesRead)).toList();
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, parts.size()),
+                    new CustomizableThreadFactory("catalog-reader-"));
+            try {
+                List<CompletableFuture<CatalogFileReport>> futures = parts.stream()
+                        .map(part -> CompletableFuture.supplyAsync(() -> readPart(part, reader, consumer, rejected, bytesRead), executor))
+                        .toList();
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                        .exceptionally(e -> null)
+                        .join();
+                reports = futures.stream().map(CompletableFuture::join).toList();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        List<String> failed = reports.stream()
+                .filter(report -> report.failure() != null)
+                .map(CatalogFileReport::file)
+                .toList();
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException("Can not read catalog files " + failed + " of " + location);
+        }
+        return reports;
+    }
+
+    /**
+     * Malformed or unreadable files are reported; any other exception, such as a failed bulk request, is rethrown.
+     */
+    private static CatalogFileReport readPart(Resource part, CatalogReader reader, CatalogReader.DocumentConsumer consumer,
+                                              Consumer<ProductIndexError> rejected, LongConsumer bytesRead) {
+        String name = name(part);
+        AtomicInteger documents = new AtomicInteger();
+        AtomicInteger rejectedDocuments = new AtomicInteger();
+        long startTime = System.nanoTime();
+
+        String failure = null;
+        try (InputStream inputStream = open(part, bytesRead)) {
+            reader.read(inputStream, name, (id, document, sizeInBytes) -> {
+                documents.incrementAndGet();
+                consumer.accept(id, document, sizeInBytes);
+            }, error -> {
+                rejectedDocuments.incrementAndGet();
+                rejected.accept(error);
+            });
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Failed to read catalog file {} after {} documents", name, documents.get(), e);
+            failure = e.getMessage();
+        }
+
+        long durationMillis = (System.nanoTime() - startTime) / 1_000_000;
+        log.info("Catalog file {} has been read: {} documents, {} rejected in {} ms",
+                name, documents.get(), rejectedDocuments.get(), durationMillis);
+        return new CatalogFileReport(name, documents.get(), rejectedDocuments.get(), durationMillis, failure);
+    }
+
+    private static InputStream open(Resource part, LongConsumer bytesRead) throws IOException {
+        InputStream inputStream = new CountingInputStream(part.getInputStream(), bytesRead);
+        String name = part.getFilename();
+        if (name != null && name.endsWith(".gz")) {
+            try {
+                return new GZIPInputStream(inputStream, GZIP_BUFFER_SIZE);
+            } catch (IOException e) {
+                inputStream.close();
+                throw e;
+            }
+        }
+        return inputStream;
+    }
+
+    private static List<Resource> listDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .sorted()
+                    .map(Path::toFile)
+                    .map(FileSystemResource::new)
+                    .map(Resource.class::cast)
+                    .toList();
+        }
+    }
+
+    private static String name(Resource part) {
+        return part.getFilename() != null ? part.getFilename() : part.getDescription();
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private final LongConsumer bytesRead;
+
+        CountingInputStream(InputStream in, LongConsumer bytesRead) {
+            super(in);
+            this.bytesRead = bytesRead;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesRead.accept(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytesRead.accept(read);
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import co.elastic.clients.util.BinaryData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Local NDJSON file of bulk items that exhausted their retries.
+ */
+@Slf4j
+@Component
+class DeadLetterStore {
+
+    record DeadLetter(
+            String index,
+            String id,
+            BulkItem.Action action,
+            Object document,
+            String reason,
+            Instant failedAt
+    ) {
+
+        BulkItem toItem(String targetIndex) {
+            return new BulkItem(targetIndex, id, action, document, 0);
+        }
+
+        /**
+         * Raw documents of the pass-through mode are stored as JSON rather than as a serialized {@link BinaryData}.
+         */
+        DeadLetter withJsonDocument(ObjectMapper objectMapper) throws IOException {
+            if (!(document instanceof BinaryData data)) {
+                return this;
+            }
+            return new DeadLetter(index, id, action, objectMapper.readTree(data.asInputStream()), reason, failedAt);
+        }
+    }
+
+    private final Path file;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Held for a whole drain, apart from the monitor guarding appends, so concurrent replays run one after
+     * another and items failing again can still be appended meanwhile.
+     */
+    private final Object drainLock = new Object();
+
+    DeadLetterStore(IndexProperties indexProperties, ObjectMapper objectMapper) {
+        this.file = Path.of(indexProperties.retry().deadLetterFile());
+        this.objectMapper = objectMapper;
+    }
+
+    synchronized void append(List<DeadLetter> deadLetters) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (DeadLetter deadLetter : deadLetters) {
+                    writer.write(objectMapper.writeValueAsString(deadLetter.withJsonDocument(objectMapper)));
+                    writer.newLine();
+                }
+            }
+            log.warn("{} bulk items have been written to the dead-letter file {}", deadLetters.size(), file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write dead letters to " + file, e);
+        }
+    }
+
+    /**
+     * Moves the current dead letters aside and hands them to {@code consumer} in batches.
+     * Items failing again during the replay are appended to a fresh dead-letter file by the caller.
+     * The number of dead letters handed over is recorded after every batch, so a file left over by an interrupted
+     * replay resumes after them and only the batch in flight at the interruption is replayed again.
+     * A drain called while another one runs waits for it and then replays what was dead-lettered meanwhile.
+     *
+     * @return number of dead letters handed to {@code consumer} by this call
+     */
+    int drain(int batchSize, Consumer<List<DeadLetter>> consumer) {
+        synchronized (drainLock) {
+            return drainExclusively(batchSize, consumer);
+        }
+    }
+
+    private int drainExclusively(int batchSize, Consumer<List<DeadLetter>> consumer) {
+        Path replaying = file.resolveSibling(file.getFileName() + ".replaying");
+        Path progress = file.resolveSibling(file.getFileName() + ".replayed");
+        synchronized (this) {
+            // a file left over by an interrupted replay is replayed first
+            if (!Files.exists(replaying)) {
+                if (!Files.exists(file)) {
+                    return 0;
+                }
+                try {
+                    Files.deleteIfExists(progress);
+                    Files.move(file, replaying, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to move dead-letter file " + file, e);
+                }
+            }
+        }
+
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+            int done = readProgress(progress);
+            int skipped = 0;
+            List<DeadLetter> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (skipped < done) {
+                    skipped++;
+                    continue;
+                }
+                batch.add(objectMapper.readValue(line, DeadLetter.class));
+                if (batch.size() >= batchSize) {
+                    consumer.accept(batch);
+                    count += batch.size();
+                    writeProgress(progress, done + count);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                consumer.accept(batch);
+                count += batch.size();
+            }
+            Files.deleteIfExists(replaying);
+            Files.deleteIfExists(progress);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay dead-letter file " + replaying, e);
+        }
+        return count;
+    }
+
+    private static int readProgress(Path progress) throws IOException {
+        if (!Files.exists(progress)) {
+            return 0;
+        }
+        String value = Files.readString(progress, StandardCharsets.UTF_8).trim();
+        return value.isEmpty() ? 0 : Integer.parseInt(value);
+    }
+
+    /**
+     * Written to a temporary file and moved over the previous one, so a crash never leaves it half written.
+     */
+    private static void writeProgress(Path progress, int replayed) throws IOException {
+        Path temporary = progress.resolveSibling(progress.getFileName() + ".tmp");
+        Files.writeString(temporary, Integer.toString(replayed), StandardCharsets.UTF_8);
+        Files.move(temporary, progress, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,54 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.griddynamics.searchretraining.documentindexing.config.ProductCacheProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ProductDocument;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Read-through cache in front of {@link ProductIndexerRepository#getProduct(String)}.
+ * The repository invalidates products it writes and clears the cache when the alias is switched.
+ * Loading and invalidation of the same key are serialized by the cache, so a read racing with
+ * a write can not leave the old document cached.
+ */
+@Component
+public class ProductCache {
+
+    private final boolean enabled;
+
+    private final Cache<String, ProductDocument> cache;
+
+    public ProductCache(ProductCacheProperties properties, MeterRegistry meterRegistry) {
+        this.enabled = properties.enabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .expireAfterWrite(properties.ttl())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+    }
+
+    /**
+     * @return the cached product or the one returned by {@code loader}; {@code null} results are not cached
+     */
+    public ProductDocument get(String productId, Function<String, ProductDocument> loader) {
+        return enabled
+                ? cache.get(productId, loader)
+                : loader.apply(productId);
+    }
+
+    public void invalidate(Collection<String> productIds) {
+        cache.invalidateAll(productIds);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+}
@@ -1,22 +1,28 @@
 package com.griddynamics.searchretraining.documentindexing.repository;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.HealthStatus;
 import co.elastic.clients.elasticsearch._types.Refresh;
-import co.elastic.clients.elasticsearch.core.BulkRequest;
-import co.elastic.clients.elasticsearch.core.BulkResponse;
 import co.elastic.clients.elasticsearch.core.GetResponse;
-import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.MgetResponse;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
 import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
 import co.elastic.clients.elasticsearch.indices.CreateIndexResponse;
 import co.elastic.clients.elasticsearch.indices.UpdateAliasesRequest;
 import co.elastic.clients.elasticsearch.indices.UpdateAliasesResponse;
 import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
-import com.fasterxml.jackson.core.type.TypeReference;
+import co.elastic.clients.util.BinaryData;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.metrics.PipelineMetrics;
+import com.griddynamics.searchretraining.documentindexing.metrics.PipelineMetrics.ReindexPhase;
+import com.griddynamics.searchretraining.documentindexing.model.CatalogFileReport;
+import com.griddynamics.searchretraining.documentindexing.model.DeadLetterReplayResponse;
 import com.griddynamics.searchretraining.documentindexing.model.ProductDocument;
-import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
 import com.griddynamics.searchretraining.documentindexing.model.ProductIndexError;
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
 import com.griddynamics.searchretraining.documentindexing.model.UpdateCatalogResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,13 +30,23 @@ import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Repository;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static com.griddynamics.searchretraining.documentindexing.model.ProductDocument.Fields.LAST_UPDATED;
+import static com.griddynamics.searchretraining.documentindexing.model.ProductDocument.Fields.ID;
 
 @Slf4j
 @Repository
@@ -39,72 +55,286 @@ public class ProductIndexerRepository {
 
     private static final int MAX_INDEXES_COUNT = 3;
 
+    private static final String SETTINGS = "settings";
+
+    private static final String NUMBER_OF_REPLICAS = "number_of_replicas";
+
+    private static final String REFRESH_INTERVAL = "refresh_interval";
+
     private final IndexProperties indexProperties;
 
     private final ElasticsearchClient esClient;
 
+    private final RetryingBulkExecutor bulkExecutor;
+
+    private final DeadLetterStore deadLetterStore;
+
+    private final ProductCache productCache;
+
+    private final RebuildCatchUp rebuildCatchUp;
+
+    private final PipelineMetrics pipelineMetrics;
+
     private final ObjectMapper objectMapper;
 
     private final ResourceLoader resourceLoader;
 
+    /**
+     * @param retriedItems items that had to be resent because Elasticsearch rejected them or was unavailable
+     * @param took         time spent in the bulk request, including retries
+     * @param failedIds    ids of the products whose update failed permanently or was dead-lettered
+     */
+    public record UpdateResult(int updated, int failed, int retriedItems, Duration took, Set<String> failedIds) {
+    }
+
     public UpdateCatalogResponse reindexCatalog() {
+        return reindexCatalog(new ReindexProgress());
+    }
+
+    /**
+     * Builds a new index and switches the alias to it. If the reindex fails or is cancelled before the alias
+     * switch, the new index is deleted.
+     *
+     * @throws java.util.concurrent.CancellationException if cancelled through {@code progress}
+     */
+    UpdateCatalogResponse reindexCatalog(ReindexProgress progress) {
         String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
         String indexName = indexProperties.alias() + "_" + timestamp;
 
-        if (indexExists(indexName)) {
-            deleteIndex(indexName);
+        if (rebuildCatchUp.isEnabled()) {
+            rebuildCatchUp.start();
+        }
+        long phaseStart = System.nanoTime();
+        UpdateCatalogResponse updateCatalogResponse;
+        CatalogFingerprints.Writer fingerprints = fingerprintWriter();
+        try {
+            progress.phase(ReindexPhase.CREATE);
+            if (indexExists(indexName)) {
+                deleteIndex(indexName);
+            }
+            createNewIndex(indexName);
+            phaseStart = recordPhase(ReindexPhase.CREATE, phaseStart);
+
+            progress.phase(ReindexPhase.LOAD);
+            updateCatalogResponse = indexBulkData(indexName, progress, fingerprints);
+            progress.throwIfCancelled();
+            finishBulkLoad(indexName);
+            phaseStart = recordPhase(ReindexPhase.LOAD, phaseStart, updateCatalogResponse.count());
+
+            progress.phase(ReindexPhase.ALIAS);
+            progress.commit();
+            if (rebuildCatchUp.isEnabled()) {
+                rebuildCatchUp.finish(updates -> replayUpdates(indexName, updates),
+                        () -> assignAlias(indexName, indexProperties.alias()));
+            } else {
+                assignAlias(indexName, indexProperties.alias());
+            }
+            productCache.invalidateAll();
+            commitFingerprints(fingerprints, updateCatalogResponse);
+            phaseStart = recordPhase(ReindexPhase.ALIAS, phaseStart);
+        } catch (RuntimeException e) {
+            if (!progress.isCommitted()) {
+                deleteHalfBuiltIndex(indexName);
+            }
+            throw e;
+        } finally {
+            rebuildCatchUp.stop();
+            closeFingerprints(fingerprints);
         }
-        createNewIndex(indexName);
-        UpdateCatalogResponse updateCatalogResponse = indexBulkData(indexName);
-        assignAlias(indexName, indexProperties.alias());
+
+        progress.phase(ReindexPhase.CLEANUP);
         deleteOldIndexesIfRequired();
+        recordPhase(ReindexPhase.CLEANUP, phaseStart);
 
         return updateCatalogResponse;
     }
 
-    public void updateProducts(List<ProductUpdateEvent> productUpdateEvents) {
-        var bulkRequestBuilder = new BulkRequest.Builder()
-                .refresh(Refresh.True);
-
-        for (ProductUpdateEvent updateEvent : productUpdateEvents) {
-            bulkRequestBuilder.operations(op -> op
-                    .update(u -> u
-                            .index(indexProperties.alias())
-                            .id(updateEvent.id())
-                            .action(a -> a
-                                    .doc(Map.of(
-                                            updateEvent.field(), updateEvent.newValue(),
-                                            LAST_UPDATED, updateEvent.timestamp()
-                                    ))
-                            )
-                    )
-            );
-        }
-
-        try {
-            BulkResponse result = esClient.bulk(bulkRequestBuilder.build());
-            log.info("Documents have been updated: {}", result.items().size());
-            if (result.errors()) {
-                result.items().stream()
-                        .filter(item -> item.error() != null)
-                        .forEach(item -> log.warn("Error updating doc Id: {}, Error: {}", item.id(), item.error().reason()));
-            }
+    /**
+     * Sends only the catalog documents whose content changed since the last load, and deletes for the ids
+     * that vanished from the catalog, to the index behind the alias. Falls back to {@link #reindexCatalog()}
+     * if there are no fingerprints of a previous load or no index behind the alias.
+     */
+    public UpdateCatalogResponse deltaReindexCatalog() {
+        return deltaReindexCatalog(new ReindexProgress());
+    }
+
+    /**
+     * A cancelled delta keeps the changes already sent and the fingerprints of the previous load,
+     * so the next delta sends them again.
+     *
+     * @throws java.util.concurrent.CancellationException if cancelled through {@code progress}
+     */
+    UpdateCatalogResponse deltaReindexCatalog(ReindexProgress progress) {
+        Path fingerprintFile = Path.of(indexProperties.delta().fingerprintFile());
+        if (!indexProperties.delta().enabled() || !Files.exists(fingerprintFile) || !aliasExists()) {
+            log.info("No fingerprints of a previous catalog load, running a full reindex.");
+            return reindexCatalog(progress);
+        }
 
+        long phaseStart = System.nanoTime();
+        AtomicInteger unchanged = new AtomicInteger();
+        AtomicInteger changed = new AtomicInteger();
+        AtomicInteger deleted = new AtomicInteger();
+
+        UpdateCatalogResponse sent;
+        List<CatalogFileReport> files;
+        try (var bulkIndexer = newBulkIndexer(indexProperties.alias(), progress);
+             var fingerprints = CatalogFingerprints.writer(fingerprintFile)) {
+
+            progress.phase(ReindexPhase.LOAD);
+            CatalogFingerprints previous = CatalogFingerprints.load(fingerprintFile);
+            log.info("Loaded fingerprints of {} documents from {}", previous.size(), fingerprintFile);
+
+            files = readCatalog(catalogSource(), progress, (id, document, sizeInBytes) -> {
+                progress.throwIfCancelled();
+                long contentHash = contentHash(document);
+                boolean unchangedDocument;
+                synchronized (previous) {
+                    fingerprints.add(id, contentHash);
+                    unchangedDocument = previous.markSeen(id, contentHash);
+                }
+                if (unchangedDocument) {
+                    unchanged.incrementAndGet();
+                } else {
+                    changed.incrementAndGet();
+                    bulkIndexer.add(id, document, sizeInBytes);
+                }
+            }, bulkIndexer::reject);
+            previous.forEachUnseen(fingerprintFile, id -> {
+                progress.throwIfCancelled();
+                deleted.incrementAndGet();
+                bulkIndexer.delete(id);
+            });
+
+            sent = bulkIndexer.finish();
+            // failed documents must be resent by the next delta, so their old fingerprints are kept
+            if (sent.errors().isEmpty()) {
+                fingerprints.commit();
+            }
         } catch (IOException e) {
-            throw new RuntimeException("Failed to execute bulk update", e);
+            throw new IllegalArgumentException("Can not read resource file: " + indexProperties.bulkData(), e);
         }
+        productCache.invalidateAll();
+        recordPhase(ReindexPhase.LOAD, phaseStart, sent.count());
+
+        log.info("Delta reindex: unchanged={}, changed={}, deleted={}, errors={}",
+                unchanged.get(), changed.get(), deleted.get(), sent.errors().size());
+        return new UpdateCatalogResponse(sent.count(), sent.errors(), unchanged.get(), changed.get(), deleted.get())
+                .withFiles(files);
+    }
+
+    public UpdateResult updateProducts(List<ProductPartialUpdate> productUpdates) {
+        rebuildCatchUp.record(productUpdates);
+
+        List<BulkItem> items = productUpdates.stream()
+                .map(update -> BulkItem.update(indexProperties.alias(), update, indexProperties.guardStaleUpdates()))
+                .toList();
+
+        long startTime = System.nanoTime();
+        RetryingBulkExecutor.BulkResult result;
+        try {
+            result = executeBulk(items, indexProperties.updateRefresh().refresh());
+        } finally {
+            productCache.invalidate(items.stream().map(BulkItem::id).toList());
+        }
+        log.info("Documents have been updated: {}", result.itemsCount());
+        result.errors().forEach(error ->
+                log.warn("Error updating doc Id: {}, Error: {}", error.productId(), error.reason()));
+
+        return new UpdateResult(result.itemsCount() - result.errors().size(), result.errors().size(),
+                result.retriedItems(), Duration.ofNanos(System.nanoTime() - startTime),
+                result.errors().stream().map(ProductIndexError::productId).collect(Collectors.toSet()));
+    }
+
+    public DeadLetterReplayResponse replayDeadLetters() {
+        List<ProductIndexError> errors = new ArrayList<>();
+        int replayed = deadLetterStore.drain(indexProperties.bulk().maxDocuments(), deadLetters -> {
+            List<BulkItem> items = deadLetters.stream()
+                    .map(deadLetter -> deadLetter.toItem(indexProperties.alias()))
+                    .toList();
+            errors.addAll(executeBulk(items, null).errors());
+            productCache.invalidate(items.stream().map(BulkItem::id).toList());
+        });
+
+        log.info("Dead letters have been replayed: {}, failed again: {}", replayed, errors.size());
+        return new DeadLetterReplayResponse(replayed, errors);
     }
 
     public GetResponse<ProductDocument> getProduct(String id) {
         try {
-            return esClient.get(g -> g.index(indexProperties.alias()).id(id), ProductDocument.class);
+            return esClient.get(g -> g
+                    .index(indexProperties.alias())
+                    .id(id)
+                    .realtime(true), ProductDocument.class);
         } catch (IOException e) {
             throw new RuntimeException("Failed to get document from index with id: " + id, e);
         }
     }
 
+    /**
+     * Resolves the products with one {@code _mget} per {@code index.mget-chunk-size} ids and hands every
+     * chunk's results to the consumers before requesting the next one.
+     *
+     * @param fields source fields to return, all fields if empty; {@code id} is always returned
+     */
+    public void getProducts(List<String> ids, List<String> fields,
+                            Consumer<ProductDocument> found, Consumer<String> missing) {
+        List<String> sourceIncludes = fields.isEmpty() || fields.contains(ID)
+                ? fields
+                : Stream.concat(Stream.of(ID), fields.stream()).toList();
+
+        for (int from = 0; from < ids.size(); from += indexProperties.mgetChunkSize()) {
+            List<String> chunk = ids.subList(from, Math.min(ids.size(), from + indexProperties.mgetChunkSize()));
+
+            try {
+                MgetResponse<ProductDocument> response = esClient.mget(m -> {
+                    m.index(indexProperties.alias())
+                            .ids(chunk)
+                            .realtime(true);
+                    if (!sourceIncludes.isEmpty()) {
+                        m.sourceIncludes(sourceIncludes);
+                    }
+                    return m;
+                }, ProductDocument.class);
+
+                for (MultiGetResponseItem<ProductDocument> item : response.docs()) {
+                    if (item.isFailure()) {
+                        log.warn("Failed to get doc Id: {}, Error: {}", item.failure().id(), item.failure().error().reason());
+                        missing.accept(item.failure().id());
+                    } else if (item.result().found()) {
+                        found.accept(item.result().source());
+                    } else {
+                        missing.accept(item.result().id());
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to get documents from index, first id: " + chunk.get(0), e);
+            }
+        }
+    }
+
+    /**
+     * @return start of the next phase
+     */
+    private long recordPhase(ReindexPhase phase, long phaseStart) {
+        return recordPhase(phase, phaseStart, 0);
+    }
+
+    private long recordPhase(ReindexPhase phase, long phaseStart, long documents) {
+        long now = System.nanoTime();
+        pipelineMetrics.recordReindexPhase(phase, Duration.ofNanos(now - phaseStart), documents);
+        return now;
+    }
+
     private void createNewIndex(String indexName) {
-        try (var settings = getResource(indexProperties.settings())) {
+        ObjectNode indexSettings = readIndexSettings();
+        if (indexProperties.bulkLoad().enabled()) {
+            indexSettings.withObjectProperty(SETTINGS)
+                    .put(REFRESH_INTERVAL, "-1")
+                    .put(NUMBER_OF_REPLICAS, 0);
+        }
+
+        try (var settings = new ByteArrayInputStream(objectMapper.writeValueAsBytes(indexSettings))) {
             CreateIndexRequest request = CreateIndexRequest.of(b -> b
                     .index(indexName)
                     .withJson(settings));
@@ -121,6 +351,84 @@ public class ProductIndexerRepository {
         }
     }
 
+    private void finishBulkLoad(String indexName) {
+        IndexProperties.BulkLoad bulkLoad = indexProperties.bulkLoad();
+
+        if (bulkLoad.enabled()) {
+            restoreIndexSettings(indexName);
+        }
+        if (bulkLoad.refresh()) {
+            refreshIndex(indexName);
+        }
+        if (bulkLoad.maxNumSegments() > 0) {
+            forceMerge(indexName, bulkLoad.maxNumSegments());
+        }
+        if (bulkLoad.waitForHealth()) {
+            waitForHealth(indexName, bulkLoad.waitForStatus(), bulkLoad.healthTimeout());
+        }
+    }
+
+    private void restoreIndexSettings(String indexName) {
+        JsonNode settings = readIndexSettings().path(SETTINGS);
+        String replicas = settings.path(NUMBER_OF_REPLICAS).asText("1");
+        String refreshInterval = settings.path(REFRESH_INTERVAL).asText(indexProperties.bulkLoad().refreshInterval());
+
+        try {
+            var response = esClient.indices().putSettings(p -> p
+                    .index(indexName)
+                    .settings(s -> s
+                            .numberOfReplicas(replicas)
+                            .refreshInterval(t -> t.time(refreshInterval))));
+
+            if (!response.acknowledged()) {
+                log.warn("Settings update not acknowledged for index: {}", indexName);
+            } else {
+                log.info("Index {} settings have been restored: replicas={}, refresh_interval={}",
+                        indexName, replicas, refreshInterval);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to restore settings for index: " + indexName, e);
+        }
+    }
+
+    private void refreshIndex(String indexName) {
+        try {
+            esClient.indices().refresh(r -> r.index(indexName));
+            log.info("Index {} has been refreshed.", indexName);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to refresh index: " + indexName, e);
+        }
+    }
+
+    private void forceMerge(String indexName, int maxNumSegments) {
+        try {
+            esClient.indices().forcemerge(f -> f
+                    .index(indexName)
+                    .maxNumSegments((long) maxNumSegments));
+            log.info("Index {} has been force-merged to {} segment(s).", indexName, maxNumSegments);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to force-merge index: " + indexName, e);
+        }
+    }
+
+    private void waitForHealth(String indexName, HealthStatus status, Duration timeout) {
+        try {
+            var response = esClient.cluster().health(h -> h
+                    .index(indexName)
+                    .waitForStatus(status)
+                    .timeout(t -> t.time(timeout.toMillis() + "ms")));
+
+            if (response.timedOut()) {
+                log.warn("Index {} did not reach {} health within {}, current status: {}",
+                        indexName, status, timeout, response.status());
+            } else {
+                log.info("Index {} health is {}.", indexName, response.status());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Health check failed for index: " + indexName, e);
+        }
+    }
+
     private boolean indexExists(String indexName) {
         try {
             return esClient.indices().exists(e -> e.index(indexName)).value();
@@ -129,44 +437,145 @@ public class ProductIndexerRepository {
         }
     }
 
-    private UpdateCatalogResponse indexBulkData(String indexName) {
-        List<Map<String, Object>> documents = readJsonResource(indexProperties.bulkData(), new TypeReference<>() {
-        });
+    /**
+     * Also records the fingerprints of the loaded documents into {@code fingerprints}, unless it is {@code null}.
+     */
+    private UpdateCatalogResponse indexBulkData(String indexName, ReindexProgress progress,
+                                                CatalogFingerprints.Writer fingerprints) {
+        try (var bulkIndexer = newBulkIndexer(indexName, progress)) {
+
+            List<CatalogFileReport> files = readCatalog(catalogSource(), progress, (id, document, sizeInBytes) -> {
+                progress.throwIfCancelled();
+                if (fingerprints != null) {
+                    long contentHash = contentHash(document);
+                    synchronized (fingerprints) {
+                        fingerprints.add(id, contentHash);
+                    }
+                }
+                bulkIndexer.add(id, document, sizeInBytes);
+            }, bulkIndexer::reject);
+            return bulkIndexer.finish().withFiles(files);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can not read resource file: " + indexProperties.bulkData(), e);
+        }
+    }
 
-        var bulkRequestBuilder = new BulkRequest.Builder()
-                .refresh(Refresh.True);
+    /**
+     * @return writer of the fingerprints of a full reindex, {@code null} if the delta reindex is disabled
+     */
+    private CatalogFingerprints.Writer fingerprintWriter() {
+        if (!indexProperties.delta().enabled()) {
+            return null;
+        }
+        Path fingerprintFile = Path.of(indexProperties.delta().fingerprintFile());
+        try {
+            return CatalogFingerprints.writer(fingerprintFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can not write fingerprint file: " + fingerprintFile, e);
+        }
+    }
 
-        documents.forEach(doc -> {
-            Object id = doc.get("id");
-            if (id == null) {
-                log.warn("Skipping doc without 'id': {}", doc);
-                return;
+    /**
+     * Runs only once the alias serves the new index, so the fingerprints always describe the served catalog;
+     * a failed rebuild keeps those of the previous load. Without a complete baseline the next delta reindex
+     * has to start over with a full one.
+     */
+    private void commitFingerprints(CatalogFingerprints.Writer fingerprints, UpdateCatalogResponse response) {
+        if (fingerprints == null) {
+            return;
+        }
+        Path fingerprintFile = Path.of(indexProperties.delta().fingerprintFile());
+        try {
+            if (response.errors().isEmpty()) {
+                fingerprints.commit();
+            } else {
+                Files.deleteIfExists(fingerprintFile);
             }
+        } catch (IOException e) {
+            log.error("Failed to replace fingerprint file {}, the next delta reindex runs a full one", fingerprintFile, e);
+            try {
+                Files.deleteIfExists(fingerprintFile);
+            } catch (IOException deleteFailure) {
+                e.addSuppressed(deleteFailure);
+                throw new UncheckedIOException("Can not delete stale fingerprint file: " + fingerprintFile, e);
+            }
+        }
+    }
 
-            bulkRequestBuilder.operations(BulkOperation.of(b -> b
-                    .index(i -> i
-                            .index(indexName)
-                            .id(id.toString())
-                            .document(doc)
-                    )));
-        });
+    private void closeFingerprints(CatalogFingerprints.Writer fingerprints) {
+        if (fingerprints == null) {
+            return;
+        }
+        try {
+            fingerprints.close();
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary fingerprint file", e);
+        }
+    }
+
+    /**
+     * Applies the updates recorded during a rebuild to the new index before the alias is switched to it.
+     */
+    private void replayUpdates(String indexName, List<ProductPartialUpdate> updates) {
+        int chunkSize = indexProperties.bulk().maxDocuments();
+        for (int from = 0; from < updates.size(); from += chunkSize) {
+            List<BulkItem> items = updates.subList(from, Math.min(updates.size(), from + chunkSize)).stream()
+                    .map(update -> BulkItem.update(indexName, update, indexProperties.guardStaleUpdates()))
+                    .toList();
+
+            executeBulk(items, null).errors().forEach(error ->
+                    log.warn("Error replaying update of doc Id: {} into index {}, Error: {}",
+                            error.productId(), indexName, error.reason()));
+        }
+    }
+
+    private CatalogBulkIndexer newBulkIndexer(String indexName, ReindexProgress progress) {
+        return new CatalogBulkIndexer(bulkExecutor, indexProperties.bulk(), indexName, indexProperties.clientMode(), progress);
+    }
 
+    /**
+     * Waits for the bulk in either client mode; the calling lane has to finish a batch before the next one
+     * to keep the updates of a product in order.
+     */
+    private RetryingBulkExecutor.BulkResult executeBulk(List<BulkItem> items, Refresh refresh) {
+        if (indexProperties.clientMode() == IndexProperties.ClientMode.SYNC) {
+            return bulkExecutor.execute(items, refresh);
+        }
         try {
-            BulkResponse response = esClient.bulk(bulkRequestBuilder.build());
-            int itemsCount = response.items().size();
-            List<ProductIndexError> errors = new ArrayList<>();
+            return bulkExecutor.executeAsync(items, refresh).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
 
-            if (response.errors()) {
-                response.items().stream()
-                        .filter(item -> item.error() != null)
-                        .map(item -> new ProductIndexError(item.id(), item.error().reason()))
-                        .forEach(errors::add);
-            }
+    private CatalogSource catalogSource() throws IOException {
+        return CatalogSource.resolve(resourceLoader, indexProperties.bulkData());
+    }
 
-            return new UpdateCatalogResponse(itemsCount, errors);
+    /**
+     * @return the per-file reports if the catalog is made of several files, otherwise {@code null}
+     */
+    private List<CatalogFileReport> readCatalog(CatalogSource source, ReindexProgress progress,
+                                                CatalogReader.DocumentConsumer consumer,
+                                                Consumer<ProductIndexError> rejected) {
+        progress.sourceSize(source.size());
+        List<CatalogFileReport> files = source.read(new CatalogReader(objectMapper, indexProperties.passThrough()),
+                indexProperties.bulk().readers(), consumer, rejected, progress::bytesRead);
+        return source.isMultiPart() ? files : null;
+    }
+
+    private long contentHash(Object document) throws IOException {
+        if (document instanceof BinaryData data) {
+            return CatalogFingerprints.hash(data.asByteBuffer());
+        }
+        return CatalogFingerprints.hash(objectMapper.writeValueAsBytes(document));
+    }
+
+    private boolean aliasExists() {
+        try {
+            return esClient.indices().existsAlias(e -> e.name(indexProperties.alias())).value();
         } catch (IOException e) {
-            log.error("An exception occurred during bulk bulkData processing", e);
-            throw new RuntimeException(e);
+            throw new RuntimeException("An exception occurred while checking for the alias existence: " + indexProperties.alias(), e);
         }
     }
 
@@ -216,6 +625,19 @@ public class ProductIndexerRepository {
         }
     }
 
+    /**
+     * Failures are only logged, so they do not hide the exception that stopped the reindex.
+     */
+    private void deleteHalfBuiltIndex(String indexName) {
+        try {
+            if (indexExists(indexName)) {
+                deleteIndex(indexName);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to delete the half-built index {}", indexName, e);
+        }
+    }
+
     private void deleteIndex(String indexName) {
         try {
             var deleteResponse = esClient.indices().delete(d -> d.index(indexName));
@@ -230,11 +652,11 @@ public class ProductIndexerRepository {
         }
     }
 
-    private <T> T readJsonResource(String path, TypeReference<T> typeReference) {
-        try (InputStream inputStream = getResource(path)) {
-            return objectMapper.readValue(inputStream, typeReference);
+    private ObjectNode readIndexSettings() {
+        try (InputStream inputStream = getResource(indexProperties.settings())) {
+            return (ObjectNode) objectMapper.readTree(inputStream);
         } catch (IOException e) {
-            throw new IllegalArgumentException("Can not read resource file: " + path, e);
+            throw new IllegalArgumentException("Can not read resource file: " + indexProperties.settings(), e);
         }
     }
 
@@ -0,0 +1,128 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Records the partial updates applied while a new index is being built, so they can be replayed into it
+ * before the alias is switched. Updates are recorded before they are sent to the alias, and the last round of
+ * the replay runs together with the alias switch under the lock taken by {@link #record(List)}, so an update
+ * either reaches the new index through the replay or is sent after the switch.
+ */
+@Slf4j
+@Component
+class RebuildCatchUp {
+
+    private final IndexProperties.CatchUp settings;
+
+    private final Timer window;
+
+    private final DistributionSummary replayed;
+
+    private final Object lock = new Object();
+
+    private List<ProductPartialUpdate> buffer;
+
+    private boolean overflowed;
+
+    RebuildCatchUp(IndexProperties indexProperties, MeterRegistry meterRegistry) {
+        this.settings = indexProperties.catchUp();
+        this.window = Timer.builder("reindex.catchup.window")
+                .description("Time product updates are held while the last catch-up round and the alias switch run")
+                .register(meterRegistry);
+        this.replayed = DistributionSummary.builder("reindex.catchup.updates")
+                .description("Product updates replayed into the new index per reindex")
+                .register(meterRegistry);
+    }
+
+    boolean isEnabled() {
+        return settings.enabled();
+    }
+
+    void start() {
+        synchronized (lock) {
+            buffer = new ArrayList<>();
+            overflowed = false;
+        }
+    }
+
+    void stop() {
+        synchronized (lock) {
+            buffer = null;
+        }
+    }
+
+    /**
+     * Called before the updates are sent to the alias; blocks while the last catch-up round is running.
+     */
+    void record(List<ProductPartialUpdate> updates) {
+        synchronized (lock) {
+            if (buffer == null || overflowed) {
+                return;
+            }
+            if (buffer.size() + updates.size() > settings.maxBufferedUpdates()) {
+                log.error("More than {} product updates during the rebuild, the new index will not be switched to",
+                        settings.maxBufferedUpdates());
+                overflowed = true;
+                buffer.clear();
+                return;
+            }
+            buffer.addAll(updates);
+        }
+    }
+
+    /**
+     * Replays the recorded updates in rounds until a round is small enough, then replays the rest
+     * and runs {@code switchAlias} while updates are held.
+     *
+     * @return number of replayed updates
+     * @throws IllegalStateException if more updates arrived than can be buffered
+     */
+    int finish(Consumer<List<ProductPartialUpdate>> replay, Runnable switchAlias) {
+        int total = 0;
+        for (int round = 0; round < settings.maxRounds(); round++) {
+            List<ProductPartialUpdate> updates = drain();
+            replay.accept(updates);
+            total += updates.size();
+            if (updates.size() <= settings.finalRoundSize()) {
+                break;
+            }
+        }
+
+        long startTime = System.nanoTime();
+        synchronized (lock) {
+            List<ProductPartialUpdate> updates = drain();
+            replay.accept(updates);
+            total += updates.size();
+
+            switchAlias.run();
+            buffer = null;
+        }
+        window.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        replayed.record(total);
+
+        log.info("{} product updates made during the rebuild have been replayed into the new index.", total);
+        return total;
+    }
+
+    private List<ProductPartialUpdate> drain() {
+        synchronized (lock) {
+            if (overflowed) {
+                throw new IllegalStateException("Too many product updates during the rebuild to catch up with");
+            }
+            List<ProductPartialUpdate> updates = buffer;
+            buffer = new ArrayList<>();
+            return updates;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import com.griddynamics.searchretraining.documentindexing.model.ReindexJobStatus;
+
+/**
+ * Thrown when a reindex is requested while another one of the same alias is running.
+ */
+public class ReindexInProgressException extends RuntimeException {
+
+    private final ReindexJobStatus runningJob;
+
+    public ReindexInProgressException(ReindexJobStatus runningJob) {
+        super("Reindex of alias " + runningJob.alias() + " is already running as job " + runningJob.id());
+        this.runningJob = runningJob;
+    }
+
+    public ReindexJobStatus runningJob() {
+        return runningJob;
+    }
+}
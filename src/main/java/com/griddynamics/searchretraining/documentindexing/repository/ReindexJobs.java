@@ -0,0 +1,200 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ReindexJobStatus;
+import com.griddynamics.searchretraining.documentindexing.model.ReindexJobStatus.State;
+import com.griddynamics.searchretraining.documentindexing.model.UpdateCatalogResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs reindexes in the background, at most one per alias at a time, and keeps the status of the last
+ * {@value #MAX_FINISHED_JOBS} finished ones. Jobs live in memory only, so the guarantee holds within one instance.
+ */
+@Slf4j
+@Component
+public class ReindexJobs {
+
+    private static final int MAX_FINISHED_JOBS = 20;
+
+    public enum Mode {
+        FULL,
+        DELTA
+    }
+
+    private final ProductIndexerRepository productIndexerRepository;
+
+    private final IndexProperties indexProperties;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(new CustomizableThreadFactory("reindex-job-"));
+
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+
+    private final Map<String, Job> runningByAlias = new HashMap<>();
+
+    public ReindexJobs(ProductIndexerRepository productIndexerRepository, IndexProperties indexProperties) {
+        this.productIndexerRepository = productIndexerRepository;
+        this.indexProperties = indexProperties;
+    }
+
+    /**
+     * @throws ReindexInProgressException if a reindex of the alias is already running
+     */
+    public synchronized ReindexJobStatus start(Mode mode) {
+        String alias = indexProperties.alias();
+        Job running = runningByAlias.get(alias);
+        if (running != null) {
+            throw new ReindexInProgressException(running.status());
+        }
+
+        Job job = new Job(UUID.randomUUID().toString(), alias, mode);
+        jobs.put(job.id, job);
+        runningByAlias.put(alias, job);
+        evictFinishedJobs();
+
+        executor.execute(() -> run(job));
+        log.info("Reindex job {} ({}) of alias {} has been started.", job.id, mode, alias);
+        return job.status();
+    }
+
+    public synchronized Optional<ReindexJobStatus> status(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::status);
+    }
+
+    public synchronized List<ReindexJobStatus> list() {
+        return jobs.values().stream().map(Job::status).toList();
+    }
+
+    /**
+     * Requests the job to stop; a full reindex deletes the index it was building.
+     *
+     * @return the status after the request, empty if there is no such job
+     * @throws IllegalStateException if the job has finished or is already switching the alias
+     */
+    public synchronized Optional<ReindexJobStatus> cancel(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return Optional.empty();
+        }
+        if (!job.requestCancel()) {
+            throw new IllegalStateException("Reindex job " + id + " can not be cancelled any more");
+        }
+        log.info("Reindex job {} is being cancelled.", id);
+        return Optional.of(job.status());
+    }
+
+    @PreDestroy
+    void close() {
+        synchronized (this) {
+            runningByAlias.values().forEach(job -> job.progress.cancel());
+        }
+        executor.shutdownNow();
+    }
+
+    private void run(Job job) {
+        try {
+            UpdateCatalogResponse result = job.mode == Mode.FULL
+                    ? productIndexerRepository.reindexCatalog(job.progress)
+                    : productIndexerRepository.deltaReindexCatalog(job.progress);
+            job.finish(State.SUCCEEDED, result, null);
+            log.info("Reindex job {} has succeeded.", job.id);
+        } catch (CancellationException e) {
+            job.finish(State.CANCELLED, null, e.getMessage());
+            log.info("Reindex job {} has been cancelled.", job.id);
+        } catch (RuntimeException e) {
+            job.finish(State.FAILED, null, e.getMessage());
+            log.error("Reindex job {} has failed", job.id, e);
+        } finally {
+            synchronized (this) {
+                runningByAlias.remove(job.alias, job);
+            }
+        }
+    }
+
+    private void evictFinishedJobs() {
+        long finished = jobs.values().stream().filter(job -> job.state.isFinished()).count();
+        Iterator<Job> iterator = jobs.values().iterator();
+        while (finished > MAX_FINISHED_JOBS && iterator.hasNext()) {
+            if (iterator.next().state.isFinished()) {
+                iterator.remove();
+                finished--;
+            }
+        }
+    }
+
+    private static class Job {
+
+        private final String id;
+
+        private final String alias;
+
+        private final Mode mode;
+
+        private final Instant startedAt = Instant.now();
+
+        private final ReindexProgress progress = new ReindexProgress();
+
+        private volatile State state = State.RUNNING;
+
+        private volatile Instant finishedAt;
+
+        private volatile UpdateCatalogResponse result;
+
+        private volatile String failure;
+
+        Job(String id, String alias, Mode mode) {
+            this.id = id;
+            this.alias = alias;
+            this.mode = mode;
+        }
+
+        synchronized boolean requestCancel() {
+            if (state.isFinished() || !progress.cancel()) {
+                return false;
+            }
+            state = State.CANCELLING;
+            return true;
+        }
+
+        synchronized void finish(State state, UpdateCatalogResponse result, String failure) {
+            this.result = result;
+            this.failure = failure;
+            this.finishedAt = Instant.now();
+            this.state = state;
+        }
+
+        ReindexJobStatus status() {
+            State currentState = state;
+            Instant finished = finishedAt;
+            double documentsPerSecond;
+            if (currentState.isFinished()) {
+                long millis = Math.max(1, Duration.between(startedAt, finished).toMillis());
+                documentsPerSecond = progress.acknowledged() * 1000.0 / millis;
+            } else {
+                documentsPerSecond = progress.documentsPerSecond();
+            }
+            var phase = progress.phase();
+
+            return new ReindexJobStatus(id, alias, mode.name().toLowerCase(), currentState,
+                    phase != null ? phase.name() : null, startedAt, finished,
+                    progress.sent(), progress.acknowledged(), documentsPerSecond,
+                    currentState.isFinished() ? null : progress.etaSeconds(),
+                    progress.failed(), progress.errors(), failure, result);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import com.griddynamics.searchretraining.documentindexing.metrics.PipelineMetrics.ReindexPhase;
+import com.griddynamics.searchretraining.documentindexing.model.ProductIndexError;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of one reindex, updated by the threads reading the catalog and sending bulk requests and read by the
+ * job status. Cancellation is cooperative: the reindex checks for it between documents and phases, and once the
+ * alias is about to be switched the reindex can no longer be cancelled.
+ */
+class ReindexProgress {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private static final long RATE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong acknowledged = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final Queue<ProductIndexError> errors = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder bytesRead = new LongAdder();
+
+    private volatile long bytesTotal = -1;
+
+    private volatile ReindexPhase phase;
+
+    private volatile long loadStartNanos;
+
+    private volatile boolean cancelRequested;
+
+    private boolean committed;
+
+    private long rateSampleNanos = System.nanoTime();
+
+    private long rateSampleAcknowledged;
+
+    private double rate;
+
+    void phase(ReindexPhase phase) {
+        throwIfCancelled();
+        this.phase = phase;
+        if (phase == ReindexPhase.LOAD) {
+            loadStartNanos = System.nanoTime();
+        }
+    }
+
+    ReindexPhase phase() {
+        return phase;
+    }
+
+    /**
+     * @param bytes size of the catalog files, negative if unknown
+     */
+    void sourceSize(long bytes) {
+        bytesTotal = bytes;
+    }
+
+    void bytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    void sent(int documents) {
+        sent.addAndGet(documents);
+    }
+
+    void acknowledged(int documents, List<ProductIndexError> documentErrors) {
+        acknowledged.addAndGet(documents);
+        documentErrors.forEach(this::failed);
+    }
+
+    void failed(ProductIndexError error) {
+        if (failed.getAndIncrement() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    long sent() {
+        return sent.get();
+    }
+
+    long acknowledged() {
+        return acknowledged.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    /**
+     * @return the first errors, up to {@value #MAX_REPORTED_ERRORS}
+     */
+    List<ProductIndexError> errors() {
+        return List.copyOf(errors);
+    }
+
+    /**
+     * @return acknowledged documents per second since the previous sample at least a second ago
+     */
+    synchronized double documentsPerSecond() {
+        long now = System.nanoTime();
+        if (now - rateSampleNanos >= RATE_WINDOW_NANOS) {
+            long current = acknowledged.get();
+            rate = (current - rateSampleAcknowledged) * 1e9 / (now - rateSampleNanos);
+            rateSampleNanos = now;
+            rateSampleAcknowledged = current;
+        }
+        return rate;
+    }
+
+    /**
+     * Extrapolated from the share of catalog bytes read so far.
+     *
+     * @return seconds until the catalog is loaded, {@code null} outside of the load or if the catalog size is unknown
+     */
+    Long etaSeconds() {
+        long total = bytesTotal;
+        long read = bytesRead.sum();
+        if (phase != ReindexPhase.LOAD || total <= 0 || read == 0) {
+            return null;
+        }
+        double elapsedSeconds = (System.nanoTime() - loadStartNanos) / 1e9;
+        double done = Math.min(1.0, (double) read / total);
+        return Math.round(elapsedSeconds * (1 - done) / done);
+    }
+
+    /**
+     * @return {@code false} if the reindex has already started to switch the alias
+     */
+    synchronized boolean cancel() {
+        if (committed) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * Called right before the alias is switched; from then on the reindex runs to its end.
+     *
+     * @throws CancellationException if the reindex was cancelled before
+     */
+    synchronized void commit() {
+        throwIfCancelled();
+        committed = true;
+    }
+
+    synchronized boolean isCommitted() {
+        return committed;
+    }
+
+    /**
+     * Checked for every catalog document, so it does not take the lock.
+     */
+    void throwIfCancelled() {
+        if (cancelRequested) {
+            throw new CancellationException("Reindex has been cancelled");
+        }
+    }
+}
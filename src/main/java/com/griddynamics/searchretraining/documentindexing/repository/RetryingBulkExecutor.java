@@ -0,0 +1,316 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ProductIndexError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Sends bulk requests and resends only the items rejected with a transient error, as well as whole
+ * requests failing with an I/O error, using exponential backoff with jitter. Items Elasticsearch still rejects
+ * after {@link IndexProperties.Retry#maxRetries()} are written to the {@link DeadLetterStore}; a request that
+ * still fails with an I/O error throws instead and leaves its items to the caller, such as the journal replay,
+ * so they are never both dead-lettered and resent.
+ */
+@Slf4j
+@Component
+class RetryingBulkExecutor {
+
+    private static final Set<Integer> RETRIABLE_STATUSES = Set.of(429, 502, 503, 504);
+
+    private static final String REJECTED_EXECUTION = "es_rejected_execution_exception";
+
+    /**
+     * @param retriedItems items resent because of a transient error, counted once per retry
+     */
+    record BulkResult(int itemsCount, List<ProductIndexError> errors, int retriedItems) {
+    }
+
+    private record FailedItem(BulkItem item, String reason) {
+    }
+
+    private final ElasticsearchClient esClient;
+
+    private final ElasticsearchAsyncClient esAsyncClient;
+
+    private final IndexProperties.Retry retry;
+
+    private final DeadLetterStore deadLetterStore;
+
+    private final Counter itemRetries;
+
+    private final Counter requestRetries;
+
+    private final Counter deadLetters;
+
+    private final Timer backoff;
+
+    private final Timer took;
+
+    private final Timer duration;
+
+    private final DistributionSummary payloadBytes;
+
+    RetryingBulkExecutor(ElasticsearchClient esClient,
+                         ElasticsearchAsyncClient esAsyncClient,
+                         IndexProperties indexProperties,
+                         DeadLetterStore deadLetterStore,
+                         MeterRegistry meterRegistry) {
+        this.esClient = esClient;
+        this.esAsyncClient = esAsyncClient;
+        this.retry = indexProperties.retry();
+        this.deadLetterStore = deadLetterStore;
+        this.itemRetries = Counter.builder("es.bulk.retries")
+                .description("Bulk items or requests resent after a transient failure")
+                .tag("scope", "item")
+                .register(meterRegistry);
+        this.requestRetries = Counter.builder("es.bulk.retries")
+                .description("Bulk items or requests resent after a transient failure")
+                .tag("scope", "request")
+                .register(meterRegistry);
+        this.deadLetters = Counter.builder("es.bulk.dead.letters")
+                .description("Bulk items written to the dead-letter file after exhausting their retries")
+                .register(meterRegistry);
+        this.backoff = Timer.builder("es.bulk.backoff")
+                .description("Time spent waiting between bulk retries")
+                .register(meterRegistry);
+        this.took = Timer.builder("es.bulk.took")
+                .description("Bulk processing time reported by Elasticsearch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.duration = Timer.builder("es.bulk.duration")
+                .description("Bulk round trip time measured by the client")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.payloadBytes = DistributionSummary.builder("es.bulk.payload")
+                .description("Estimated document bytes per bulk request")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return number of items sent and the items failed permanently, including dead-lettered ones
+     * @throws RuntimeException if the last attempt failed with an I/O error; the pending items are not dead-lettered
+     */
+    BulkResult execute(List<BulkItem> items, Refresh refresh) {
+        List<ProductIndexError> errors = new ArrayList<>();
+        List<BulkItem> pending = items;
+        int retriedItems = 0;
+
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                sleep(attempt);
+            }
+
+            BulkResponse response;
+            long startTime = System.nanoTime();
+            try {
+                payloadBytes.record(pending.stream().mapToLong(BulkItem::sizeInBytes).sum());
+                response = esClient.bulk(bulkRequest(pending, refresh));
+                took.record(response.took(), TimeUnit.MILLISECONDS);
+            } catch (IOException e) {
+                if (attempt >= retry.maxRetries()) {
+                    throw new RuntimeException("Failed to execute bulk request after " + attempt + " retries", e);
+                }
+                log.warn("Bulk request of {} items failed, retrying: {}", pending.size(), e.toString());
+                requestRetries.increment();
+                retriedItems += pending.size();
+                continue;
+            } finally {
+                duration.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+
+            List<FailedItem> retriable = collectFailures(pending, response, errors);
+            if (retriable.isEmpty()) {
+                break;
+            }
+            if (attempt >= retry.maxRetries()) {
+                deadLetter(retriable, errors);
+                break;
+            }
+            itemRetries.increment(retriable.size());
+            retriedItems += retriable.size();
+            pending = retriable.stream().map(FailedItem::item).toList();
+        }
+
+        return new BulkResult(items.size(), errors, retriedItems);
+    }
+
+    /**
+     * Same as {@link #execute(List, Refresh)} with the asynchronous client: no thread waits for the response
+     * or for the backoff, so a caller may keep several bulk requests in flight.
+     */
+    CompletableFuture<BulkResult> executeAsync(List<BulkItem> items, Refresh refresh) {
+        return sendAsync(new AsyncBulk(items, refresh), items, 0);
+    }
+
+    private CompletableFuture<BulkResult> sendAsync(AsyncBulk bulk, List<BulkItem> pending, int attempt) {
+        payloadBytes.record(pending.stream().mapToLong(BulkItem::sizeInBytes).sum());
+        long startTime = System.nanoTime();
+
+        return esAsyncClient.bulk(bulkRequest(pending, bulk.refresh))
+                .handle((response, failure) -> {
+                    duration.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                    if (failure != null) {
+                        return onRequestFailure(bulk, pending, attempt,
+                                failure instanceof CompletionException ? failure.getCause() : failure);
+                    }
+                    took.record(response.took(), TimeUnit.MILLISECONDS);
+
+                    List<FailedItem> retriable = collectFailures(pending, response, bulk.errors);
+                    if (retriable.isEmpty()) {
+                        return CompletableFuture.completedFuture(bulk.result());
+                    }
+                    if (attempt >= retry.maxRetries()) {
+                        deadLetter(retriable, bulk.errors);
+                        return CompletableFuture.completedFuture(bulk.result());
+                    }
+                    itemRetries.increment(retriable.size());
+                    bulk.retriedItems += retriable.size();
+                    return retryAsync(bulk, retriable.stream().map(FailedItem::item).toList(), attempt + 1);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<BulkResult> onRequestFailure(AsyncBulk bulk, List<BulkItem> pending, int attempt,
+                                                           Throwable failure) {
+        if (!(failure instanceof IOException)) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        if (attempt >= retry.maxRetries()) {
+            return CompletableFuture.failedFuture(
+                    new RuntimeException("Failed to execute bulk request after " + attempt + " retries", failure));
+        }
+        log.warn("Bulk request of {} items failed, retrying: {}", pending.size(), failure.toString());
+        requestRetries.increment();
+        bulk.retriedItems += pending.size();
+        return retryAsync(bulk, pending, attempt + 1);
+    }
+
+    private CompletableFuture<BulkResult> retryAsync(AsyncBulk bulk, List<BulkItem> pending, int attempt) {
+        long delay = backoffMillis(attempt);
+        backoff.record(Duration.ofMillis(delay));
+
+        Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(() -> sendAsync(bulk, pending, attempt), delayed)
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * State of one asynchronous execution; its attempts run one after another, never concurrently.
+     */
+    private static final class AsyncBulk {
+
+        private final List<BulkItem> items;
+
+        private final Refresh refresh;
+
+        private final List<ProductIndexError> errors = new ArrayList<>();
+
+        private int retriedItems;
+
+        private AsyncBulk(List<BulkItem> items, Refresh refresh) {
+            this.items = items;
+            this.refresh = refresh;
+        }
+
+        private BulkResult result() {
+            return new BulkResult(items.size(), errors, retriedItems);
+        }
+    }
+
+    private List<FailedItem> collectFailures(List<BulkItem> sent, BulkResponse response, List<ProductIndexError> errors) {
+        List<FailedItem> retriable = new ArrayList<>();
+        if (!response.errors()) {
+            return retriable;
+        }
+
+        List<BulkResponseItem> responseItems = response.items();
+        for (int i = 0; i < responseItems.size(); i++) {
+            BulkResponseItem item = responseItems.get(i);
+            if (item.error() == null) {
+                continue;
+            }
+            if (isRetriable(item)) {
+                retriable.add(new FailedItem(sent.get(i), item.error().reason()));
+            } else {
+                errors.add(new ProductIndexError(item.id(), item.error().reason()));
+            }
+        }
+        return retriable;
+    }
+
+    private boolean isRetriable(BulkResponseItem item) {
+        return RETRIABLE_STATUSES.contains(item.status()) || REJECTED_EXECUTION.equals(item.error().type());
+    }
+
+    private void deadLetter(List<FailedItem> failedItems, List<ProductIndexError> errors) {
+        Instant now = Instant.now();
+        deadLetterStore.append(failedItems.stream()
+                .map(failed -> new DeadLetterStore.DeadLetter(
+                        failed.item().index(),
+                        failed.item().id(),
+                        failed.item().action(),
+                        failed.item().document(),
+                        failed.reason(),
+                        now))
+                .toList());
+        deadLetters.increment(failedItems.size());
+
+        failedItems.forEach(failed -> errors.add(new ProductIndexError(failed.item().id(), failed.reason())));
+    }
+
+    static BulkRequest bulkRequest(List<BulkItem> items, Refresh refresh) {
+        var builder = new BulkRequest.Builder();
+        if (refresh != null) {
+            builder.refresh(refresh);
+        }
+        items.forEach(item -> builder.operations(item.toOperation()));
+        return builder.build();
+    }
+
+    /**
+     * Exponential backoff with "equal jitter": half of the delay is fixed, the other half is random.
+     */
+    private long backoffMillis(int attempt) {
+        long base = retry.initialBackoff().toMillis() << Math.min(attempt - 1, 30);
+        long delay = Math.min(base, retry.maxBackoff().toMillis());
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private void sleep(int attempt) {
+        long jittered = backoffMillis(attempt);
+
+        try {
+            Thread.sleep(jittered);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry a bulk request", e);
+        }
+        backoff.record(Duration.ofMillis(jittered));
+    }
+}
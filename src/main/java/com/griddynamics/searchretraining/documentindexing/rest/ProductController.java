@@ -1,42 +1,192 @@
 package com.griddynamics.searchretraining.documentindexing.rest;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.searchretraining.documentindexing.integration.ProductUpdateEventStream;
+import com.griddynamics.searchretraining.documentindexing.integration.ProductUpdateGateway;
+import com.griddynamics.searchretraining.documentindexing.model.AsyncUpdateResponse;
+import com.griddynamics.searchretraining.documentindexing.model.DeadLetterReplayResponse;
+import com.griddynamics.searchretraining.documentindexing.model.ProductBatchRequest;
 import com.griddynamics.searchretraining.documentindexing.model.ProductDocument;
-import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
-import com.griddynamics.searchretraining.documentindexing.model.UpdateCatalogResponse;
+import com.griddynamics.searchretraining.documentindexing.model.ReindexJobStatus;
+import com.griddynamics.searchretraining.documentindexing.repository.ProductCache;
 import com.griddynamics.searchretraining.documentindexing.repository.ProductIndexerRepository;
-import lombok.RequiredArgsConstructor;
+import com.griddynamics.searchretraining.documentindexing.repository.ReindexInProgressException;
+import com.griddynamics.searchretraining.documentindexing.repository.ReindexJobs;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
-import org.springframework.integration.support.MessageBuilder;
-import org.springframework.messaging.MessageChannel;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
 @RequestMapping(value = "/document-indexing/products")
-@RequiredArgsConstructor
 public class ProductController {
 
     private final ProductIndexerRepository productIndexerRepository;
 
-    private final MessageChannel productUpdateChannel;
+    private final ReindexJobs reindexJobs;
 
+    private final ProductUpdateGateway productUpdateGateway;
+
+    private final ProductCache productCache;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Leaves out the fields of a product that were not requested, and are therefore null, from the mget response.
+     */
+    private final ObjectMapper partialProductMapper;
+
+    public ProductController(ProductIndexerRepository productIndexerRepository,
+                             ReindexJobs reindexJobs,
+                             ProductUpdateGateway productUpdateGateway,
+                             ProductCache productCache,
+                             ObjectMapper objectMapper) {
+        this.productIndexerRepository = productIndexerRepository;
+        this.reindexJobs = reindexJobs;
+        this.productUpdateGateway = productUpdateGateway;
+        this.productCache = productCache;
+        this.objectMapper = objectMapper;
+        this.partialProductMapper = objectMapper.copy().setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    }
+
+    /**
+     * Starts the reindex in the background; its status is available at the returned location.
+     * Responds with 409 and the running job if a reindex of the alias is already running.
+     */
     @PostMapping("/index")
-    public UpdateCatalogResponse reindexCatalog() {
-        return productIndexerRepository.reindexCatalog();
+    public ResponseEntity<ReindexJobStatus> reindexCatalog(@RequestParam(defaultValue = "full") String mode) {
+        ReindexJobs.Mode reindexMode = switch (mode) {
+            case "full" -> ReindexJobs.Mode.FULL;
+            case "delta" -> ReindexJobs.Mode.DELTA;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown reindex mode: " + mode);
+        };
+
+        try {
+            ReindexJobStatus job = reindexJobs.start(reindexMode);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/document-indexing/products/index/jobs/" + job.id()))
+                    .body(job);
+        } catch (ReindexInProgressException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.runningJob());
+        }
     }
 
-    @PutMapping("/asyncUpdate")
-    @ResponseStatus(HttpStatus.ACCEPTED)
-    public void bulkUpdateProducts(@RequestBody List<ProductUpdateEvent> productUpdateEvents) {
-        productUpdateEvents.forEach(event ->
-                productUpdateChannel.send(MessageBuilder.withPayload(event).build()));
+    @GetMapping("/index/jobs")
+    public List<ReindexJobStatus> reindexJobs() {
+        return reindexJobs.list();
+    }
+
+    @GetMapping("/index/jobs/{jobId}")
+    public ReindexJobStatus reindexJob(@PathVariable String jobId) {
+        return reindexJobs.status(jobId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown reindex job: " + jobId));
+    }
+
+    /**
+     * Responds with 409 if the job has finished or is already switching the alias.
+     */
+    @DeleteMapping("/index/jobs/{jobId}")
+    public ResponseEntity<ReindexJobStatus> cancelReindexJob(@PathVariable String jobId) {
+        try {
+            return reindexJobs.cancel(jobId)
+                    .map(job -> ResponseEntity.accepted().body(job))
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown reindex job: " + jobId));
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @PutMapping(value = "/asyncUpdate", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AsyncUpdateResponse> bulkUpdateProducts(InputStream body) throws IOException {
+        ProductUpdateEventStream events;
+        try {
+            events = ProductUpdateEventStream.jsonArray(body, objectMapper);
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        return submit(events);
+    }
+
+    @PutMapping(value = "/asyncUpdate", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<AsyncUpdateResponse> streamUpdateProducts(InputStream body) throws IOException {
+        return submit(ProductUpdateEventStream.ndjson(body, objectMapper));
+    }
+
+    @PostMapping("/deadLetters/replay")
+    public DeadLetterReplayResponse replayDeadLetters() {
+        return productIndexerRepository.replayDeadLetters();
+    }
+
+    @PostMapping("/mget")
+    public ResponseEntity<StreamingResponseBody> getProducts(@RequestBody ProductBatchRequest request) {
+        List<String> ids = request.ids() == null ? List.of() : request.ids();
+        List<String> fields = request.fields() == null ? List.of() : request.fields();
+        if (!ProductDocument.allFields().containsAll(fields)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown fields requested: " + fields);
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = partialProductMapper.createGenerator(outputStream)) {
+                List<String> missing = new ArrayList<>();
+
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("products");
+                productIndexerRepository.getProducts(ids, fields, product -> writeProduct(generator, product), missing::add);
+                generator.writeEndArray();
+                generator.writeObjectField("missing", missing);
+                generator.writeEndObject();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     @GetMapping("/{productId}")
     public ProductDocument bulkUpdateProducts(@PathVariable String productId) {
-        return productIndexerRepository.getProduct(productId).source();
+        return productCache.get(productId, id -> productIndexerRepository.getProduct(id).source());
+    }
+
+    private void writeProduct(JsonGenerator generator, ProductDocument product) {
+        try {
+            generator.writeObject(product);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write product " + product.id(), e);
+        }
     }
 
+    private ResponseEntity<AsyncUpdateResponse> submit(ProductUpdateEventStream events) throws IOException {
+        ProductUpdateGateway.Result result;
+        try (events) {
+            result = productUpdateGateway.submit(events);
+        }
+        var response = new AsyncUpdateResponse(result.accepted(), result.rejected(), result.resumeFrom());
 
+        return switch (result.outcome()) {
+            case ACCEPTED -> ResponseEntity.accepted().body(response);
+            case QUEUE_FULL -> rejected(HttpStatus.TOO_MANY_REQUESTS, response);
+            case TIMED_OUT -> rejected(HttpStatus.SERVICE_UNAVAILABLE, response);
+        };
+    }
+
+    private ResponseEntity<AsyncUpdateResponse> rejected(HttpStatus status, AsyncUpdateResponse response) {
+        long retryAfterSeconds = Math.max(1, productUpdateGateway.retryAfter().toSeconds());
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(response);
+    }
 }
@@ -0,0 +1,96 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class BulkCapacityTest {
+
+    private static final int HIGH = 0;
+
+    private static final int LOW = 1;
+
+    private final List<Thread> threads = new ArrayList<>();
+
+    @AfterEach
+    void interruptWaiters() {
+        threads.forEach(Thread::interrupt);
+    }
+
+    @Test
+    void shouldHoldAtMostTheLimitOfAClass() throws InterruptedException {
+        var capacity = new BulkCapacity(4, new int[]{1, 4});
+        capacity.acquire(HIGH);
+
+        CountDownLatch acquired = acquireInBackground(capacity, HIGH);
+        awaitWaiting();
+        assertThat(acquired.getCount()).isEqualTo(1);
+        assertThat(capacity.inUse(HIGH)).isEqualTo(1);
+
+        capacity.release(HIGH);
+        await().atMost(Duration.ofSeconds(5)).until(() -> acquired.getCount() == 0);
+        assertThat(capacity.inUse(HIGH)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldHandAFreePermitToTheHigherRankedWaitingClass() throws InterruptedException {
+        var capacity = new BulkCapacity(1, new int[]{1, 1});
+        capacity.acquire(LOW);
+
+        CountDownLatch lowAcquired = acquireInBackground(capacity, LOW);
+        awaitWaiting();
+        CountDownLatch highAcquired = acquireInBackground(capacity, HIGH);
+        awaitWaiting();
+
+        capacity.release(LOW);
+        await().atMost(Duration.ofSeconds(5)).until(() -> highAcquired.getCount() == 0);
+        assertThat(lowAcquired.getCount()).isEqualTo(1);
+        assertThat(capacity.inUse(HIGH)).isEqualTo(1);
+        assertThat(capacity.inUse(LOW)).isZero();
+
+        capacity.release(HIGH);
+        await().atMost(Duration.ofSeconds(5)).until(() -> lowAcquired.getCount() == 0);
+        assertThat(capacity.inUse(LOW)).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotLetAHigherClassAtItsLimitBlockALowerOne() throws InterruptedException {
+        var capacity = new BulkCapacity(2, new int[]{1, 2});
+        capacity.acquire(HIGH);
+
+        CountDownLatch highAcquired = acquireInBackground(capacity, HIGH);
+        awaitWaiting();
+
+        capacity.acquire(LOW);
+        assertThat(capacity.inUse(LOW)).isEqualTo(1);
+        assertThat(highAcquired.getCount()).isEqualTo(1);
+    }
+
+    private CountDownLatch acquireInBackground(BulkCapacity capacity, int rank) {
+        CountDownLatch acquired = new CountDownLatch(1);
+        threads.add(Thread.ofPlatform().daemon().start(() -> {
+            try {
+                capacity.acquire(rank);
+                acquired.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        return acquired;
+    }
+
+    /**
+     * Waits until the last started thread is blocked in {@link BulkCapacity#acquire(int)}.
+     */
+    private void awaitWaiting() {
+        Thread thread = threads.get(threads.size() - 1);
+        await().atMost(Duration.ofSeconds(5)).until(() -> thread.getState() == Thread.State.WAITING);
+    }
+}
@@ -0,0 +1,77 @@
+package com.griddynamics.searchretraining.documentindexing.integration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LastAppliedTimestampsTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldDropOnlyEventsOlderThanTheAppliedOne() {
+        var timestamps = new LastAppliedTimestamps(64, meterRegistry);
+        timestamps.advance("SKU-1", "price", T0.plusSeconds(10));
+
+        assertThat(timestamps.isStale("SKU-1", "price", T0.plusSeconds(9))).isTrue();
+        assertThat(timestamps.isStale("SKU-1", "price", T0.plusSeconds(10))).isFalse();
+        assertThat(timestamps.isStale("SKU-1", "price", T0.plusSeconds(11))).isFalse();
+        assertThat(timestamps.isStale("SKU-1", "stock", T0)).isFalse();
+        assertThat(timestamps.isStale("SKU-2", "price", T0)).isFalse();
+        assertThat(meterRegistry.counter("product.update.stale.dropped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotRecordWhenOnlyChecking() {
+        var timestamps = new LastAppliedTimestamps(64, meterRegistry);
+
+        assertThat(timestamps.isStale("SKU-1", "price", T0.plusSeconds(10))).isFalse();
+        assertThat(timestamps.isStale("SKU-1", "price", T0)).isFalse();
+        assertThat(timestamps.size()).isZero();
+    }
+
+    @Test
+    void shouldNeverMoveTheAppliedTimestampBack() {
+        var timestamps = new LastAppliedTimestamps(64, meterRegistry);
+        timestamps.advance("SKU-1", "price", T0.plusSeconds(10));
+        timestamps.advance("SKU-1", "price", T0.plusSeconds(5));
+
+        assertThat(timestamps.isStale("SKU-1", "price", T0.plusSeconds(7))).isTrue();
+        assertThat(timestamps.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictTheOldestEntryOfAFullBucket() {
+        // a capacity of four is a single bucket of four ways
+        var timestamps = new LastAppliedTimestamps(4, meterRegistry);
+        for (int i = 1; i <= 4; i++) {
+            timestamps.advance("SKU-" + i, "price", T0.plusSeconds(i));
+        }
+        assertThat(timestamps.size()).isEqualTo(4);
+
+        timestamps.advance("SKU-5", "price", T0.plusSeconds(5));
+
+        assertThat(timestamps.size()).isEqualTo(4);
+        assertThat(meterRegistry.counter("product.update.stale.evicted").count()).isEqualTo(1);
+        // SKU-1 was forgotten, so an older event for it is let through
+        assertThat(timestamps.isStale("SKU-1", "price", T0)).isFalse();
+        for (int i = 2; i <= 5; i++) {
+            assertThat(timestamps.isStale("SKU-" + i, "price", T0)).as("SKU-" + i).isTrue();
+        }
+    }
+
+    @Test
+    void shouldLetEverythingThroughWhenDisabled() {
+        var timestamps = new LastAppliedTimestamps(0, meterRegistry);
+        timestamps.advance("SKU-1", "price", T0.plusSeconds(10));
+
+        assertThat(timestamps.isStale("SKU-1", "price", T0)).isFalse();
+        assertThat(timestamps.size()).isZero();
+    }
+}
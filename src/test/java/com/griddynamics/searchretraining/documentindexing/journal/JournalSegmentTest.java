@@ -0,0 +1,113 @@
+package com.griddynamics.searchretraining.documentindexing.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JournalSegmentTest {
+
+    private static final int SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void shouldReadRecordsBackAfterReopening() throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, 7, SIZE);
+        segment.append(7, payload("first"));
+        segment.append(8, payload("second"));
+        segment.force();
+        segment.close();
+
+        assertThat(records(JournalSegment.open(segmentFile()))).containsExactly("7:first", "8:second");
+    }
+
+    @Test
+    void shouldStopAtRecordWithChecksumMismatch() throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, 1, SIZE);
+        segment.append(1, payload("intact"));
+        segment.append(2, payload("torn"));
+        segment.append(3, payload("after"));
+        segment.force();
+        segment.close();
+
+        // flip the first payload byte of the second record
+        long offset = 2L * JournalSegment.RECORD_HEADER_SIZE + payload("intact").length;
+        try (FileChannel channel = FileChannel.open(segmentFile(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, offset);
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) (b.get(0) ^ 0xff)}), offset);
+        }
+
+        assertThat(records(JournalSegment.open(segmentFile()))).containsExactly("1:intact");
+    }
+
+    @Test
+    void shouldStopAtUnwrittenSpace() throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, 1, SIZE);
+        segment.append(1, payload("only"));
+
+        assertThat(records(segment)).containsExactly("1:only");
+    }
+
+    @Test
+    void shouldRejectRecordBeyondCapacity() throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, 1, 2 * (JournalSegment.RECORD_HEADER_SIZE + 8));
+        assertThat(segment.hasRoom(8)).isTrue();
+        segment.append(1, new byte[8]);
+
+        assertThat(segment.hasRoom(8)).isTrue();
+        assertThat(segment.hasRoom(9)).isFalse();
+    }
+
+    @Test
+    void shouldBeReleasableOnlyOnceSealedAndRecoveredRecordsAcknowledged() throws IOException {
+        JournalSegment segment = JournalSegment.create(directory, 1, SIZE);
+        segment.append(1, payload("a"));
+        segment.append(2, payload("b"));
+        segment.force();
+        segment.close();
+
+        Path file = segmentFile();
+        JournalSegment recovered = JournalSegment.open(file);
+        recovered.seal();
+        recovered.forEachRecord((sequence, payload) -> recovered.recordReplayed());
+        assertThat(recovered.unacknowledged()).isEqualTo(2);
+        assertThat(recovered.isReleasable()).isFalse();
+
+        assertThat(recovered.acknowledge()).isFalse();
+        assertThat(recovered.acknowledge()).isTrue();
+        assertThat(recovered.isReleasable()).isTrue();
+
+        recovered.delete();
+        assertThat(file).doesNotExist();
+    }
+
+    private Path segmentFile() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(JournalSegment::isSegment).findFirst().orElseThrow();
+        }
+    }
+
+    private static List<String> records(JournalSegment segment) {
+        List<String> records = new ArrayList<>();
+        segment.forEachRecord((sequence, payload) ->
+                records.add(sequence + ":" + new String(payload, StandardCharsets.UTF_8)));
+        return records;
+    }
+
+    private static byte[] payload(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,646 @@
+package com.griddynamics.searchretraining.documentindexing.load;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the Elasticsearch HTTP API, covering the endpoints the service calls:
+ * {@code _bulk}, {@code _doc}, {@code _mget}, index create / exists / get / delete / settings / refresh /
+ * forcemerge, cluster health and aliases. Responses carry the {@code X-Elastic-Product} header and the fields
+ * the Java client requires.
+ * <p>
+ * Every bulk request is delayed by {@code latency} plus up to {@code latencyJitter}, and every bulk item is
+ * rejected with {@code 429 es_rejected_execution_exception} with probability {@code rejectionRate}.
+ * Document sources are kept only with {@code storeDocuments}, so catalogs of millions of documents do not
+ * have to fit into the heap of the test; without them gets find nothing and every update succeeds.
+ */
+@Slf4j
+public class FakeElasticsearch implements AutoCloseable {
+
+    /**
+     * @param storeDocuments whether to keep document sources, needed for gets and realistic update results
+     */
+    public record Settings(Duration latency, Duration latencyJitter, double rejectionRate, boolean storeDocuments) {
+
+        public static Settings instant() {
+            return new Settings(Duration.ZERO, Duration.ZERO, 0, false);
+        }
+    }
+
+    private static final String PRODUCT_HEADER = "X-Elastic-Product";
+
+    private static final String FIELD_TIMESTAMPS = "fieldTimestamps";
+
+    private final Settings settings;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Map<String, Index> indices = new ConcurrentHashMap<>();
+
+    private final Map<String, Set<String>> aliases = new ConcurrentHashMap<>();
+
+    private final LongAdder bulkRequests = new LongAdder();
+
+    private final LongAdder bulkItems = new LongAdder();
+
+    private final LongAdder rejectedItems = new LongAdder();
+
+    private final LongAdder bulkBytes = new LongAdder();
+
+    private static class Index {
+
+        private final Map<String, ObjectNode> documents = new ConcurrentHashMap<>();
+
+        private final AtomicLong seqNo = new AtomicLong();
+
+        private final LongAdder count = new LongAdder();
+    }
+
+    public FakeElasticsearch(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        log.info("Fake Elasticsearch is listening on {} with {}", uri(), settings);
+    }
+
+    public String uri() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public long bulkRequests() {
+        return bulkRequests.sum();
+    }
+
+    public long bulkItems() {
+        return bulkItems.sum();
+    }
+
+    public long rejectedItems() {
+        return rejectedItems.sum();
+    }
+
+    public long bulkBytes() {
+        return bulkBytes.sum();
+    }
+
+    /**
+     * @return documents indexed into the index, or into the index behind the alias, and not deleted
+     */
+    public long documentCount(String indexOrAlias) {
+        return resolve(indexOrAlias).stream()
+                .map(indices::get)
+                .mapToLong(index -> index == null ? 0 : index.count.sum())
+                .sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            List<String> path = Arrays.stream(exchange.getRequestURI().getPath().split("/"))
+                    .filter(segment -> !segment.isEmpty())
+                    .map(segment -> URLDecoder.decode(segment, StandardCharsets.UTF_8))
+                    .toList();
+            String query = exchange.getRequestURI().getQuery();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+
+            try {
+                route(exchange, method, path, query, body);
+            } catch (RuntimeException e) {
+                log.error("Fake Elasticsearch failed on {} {}", method, path, e);
+                sendError(exchange, 500, "exception", String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange, String method, List<String> path, String query, byte[] body) throws IOException {
+        String last = path.isEmpty() ? "" : path.get(path.size() - 1);
+
+        if (path.isEmpty()) {
+            send(exchange, 200, json -> {
+                json.writeStringField("name", "fake");
+                json.writeStringField("cluster_name", "fake");
+                json.writeStringField("cluster_uuid", "fake");
+                json.writeObjectFieldStart("version");
+                json.writeStringField("number", "8.18.0");
+                json.writeEndObject();
+                json.writeStringField("tagline", "You Know, for Search");
+            });
+        } else if (last.equals("_bulk")) {
+            bulk(exchange, path.size() > 1 ? path.get(0) : null, body);
+        } else if (last.equals("_mget")) {
+            mget(exchange, path.size() > 1 ? path.get(0) : null, query, body);
+        } else if (path.get(0).equals("_aliases")) {
+            updateAliases(exchange, body);
+        } else if (path.get(0).equals("_alias") && path.size() == 2) {
+            boolean exists = aliases.containsKey(path.get(1));
+            if (method.equals("HEAD")) {
+                sendEmpty(exchange, exists ? 200 : 404);
+            } else {
+                send(exchange, exists ? 200 : 404, json -> writeAliases(json, path.get(1)));
+            }
+        } else if (path.get(0).equals("_cluster") && path.size() >= 2 && path.get(1).equals("health")) {
+            health(exchange);
+        } else if (path.size() == 3 && path.get(1).equals("_doc") && method.equals("GET")) {
+            get(exchange, path.get(0), path.get(2));
+        } else if (path.size() == 2 && (last.equals("_refresh") || last.equals("_forcemerge"))) {
+            send(exchange, 200, this::writeShards);
+        } else if (path.size() == 2 && last.equals("_settings") && method.equals("PUT")) {
+            send(exchange, 200, json -> json.writeBooleanField("acknowledged", true));
+        } else if (path.size() == 1) {
+            index(exchange, method, path.get(0));
+        } else {
+            sendError(exchange, 400, "illegal_argument_exception", "Not supported by the fake: " + method + " " + path);
+        }
+    }
+
+    private void index(HttpExchange exchange, String method, String name) throws IOException {
+        switch (method) {
+            case "HEAD" -> sendEmpty(exchange, resolve(name).stream().anyMatch(indices::containsKey) ? 200 : 404);
+            case "PUT" -> {
+                if (indices.putIfAbsent(name, new Index()) != null) {
+                    sendError(exchange, 400, "resource_already_exists_exception", "index [" + name + "] already exists");
+                    return;
+                }
+                send(exchange, 200, json -> {
+                    json.writeBooleanField("acknowledged", true);
+                    json.writeBooleanField("shards_acknowledged", true);
+                    json.writeStringField("index", name);
+                });
+            }
+            case "DELETE" -> {
+                List<String> deleted = matching(name);
+                if (deleted.isEmpty()) {
+                    sendError(exchange, 404, "index_not_found_exception", "no such index [" + name + "]");
+                    return;
+                }
+                deleted.forEach(index -> {
+                    indices.remove(index);
+                    aliases.values().forEach(aliasIndices -> aliasIndices.remove(index));
+                });
+                aliases.values().removeIf(Set::isEmpty);
+                send(exchange, 200, json -> json.writeBooleanField("acknowledged", true));
+            }
+            case "GET" -> send(exchange, 200, json -> {
+                for (String index : matching(name)) {
+                    json.writeObjectFieldStart(index);
+                    json.writeObjectFieldStart("aliases");
+                    for (Map.Entry<String, Set<String>> alias : aliases.entrySet()) {
+                        if (alias.getValue().contains(index)) {
+                            json.writeObjectFieldStart(alias.getKey());
+                            json.writeEndObject();
+                        }
+                    }
+                    json.writeEndObject();
+                    json.writeEndObject();
+                }
+            });
+            default -> sendError(exchange, 405, "illegal_argument_exception", "Method not allowed: " + method);
+        }
+    }
+
+    private void bulk(HttpExchange exchange, String defaultIndex, byte[] body) throws IOException {
+        bulkRequests.increment();
+        bulkBytes.add(body.length);
+        long startTime = System.nanoTime();
+        delay();
+
+        ByteArrayOutputStream items = new ByteArrayOutputStream();
+        boolean errors = false;
+        try (JsonGenerator json = objectMapper.createGenerator(items)) {
+            json.writeStartArray();
+            int offset = 0;
+            while (offset < body.length) {
+                int end = lineEnd(body, offset);
+                if (end == offset) {
+                    offset++;
+                    continue;
+                }
+                JsonNode actionLine = objectMapper.readTree(body, offset, end - offset);
+                offset = end + 1;
+
+                String action = actionLine.fieldNames().next();
+                JsonNode meta = actionLine.get(action);
+                String index = meta.hasNonNull("_index") ? meta.get("_index").asText() : defaultIndex;
+                String id = meta.path("_id").asText();
+
+                int sourceStart = offset;
+                int sourceEnd = offset;
+                if (!action.equals("delete")) {
+                    sourceEnd = lineEnd(body, offset);
+                    offset = sourceEnd + 1;
+                }
+
+                bulkItems.increment();
+                json.writeStartObject();
+                json.writeObjectFieldStart(action);
+                if (ThreadLocalRandom.current().nextDouble() < settings.rejectionRate()) {
+                    rejectedItems.increment();
+                    errors = true;
+                    writeItemError(json, index, id, 429, "es_rejected_execution_exception",
+                            "rejected execution of coordinating operation");
+                } else {
+                    errors |= !applyItem(json, action, index, id, body, sourceStart, sourceEnd);
+                }
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+
+        boolean hasErrors = errors;
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        send(exchange, 200, json -> {
+            json.writeNumberField("took", took);
+            json.writeBooleanField("errors", hasErrors);
+            json.writeFieldName("items");
+            json.writeRawValue(items.toString(StandardCharsets.UTF_8));
+        });
+    }
+
+    /**
+     * @return {@code false} if the item failed
+     */
+    private boolean applyItem(JsonGenerator json, String action, String indexName, String id,
+                              byte[] body, int sourceStart, int sourceEnd) throws IOException {
+        List<String> targets = resolve(indexName);
+        Index index = targets.size() == 1 ? indices.get(targets.get(0)) : null;
+        if (index == null) {
+            writeItemError(json, indexName, id, 404, "index_not_found_exception", "no such index [" + indexName + "]");
+            return false;
+        }
+        String concreteIndex = targets.get(0);
+
+        String result;
+        int status = 200;
+        switch (action) {
+            case "index", "create" -> {
+                boolean created = true;
+                if (settings.storeDocuments()) {
+                    created = index.documents.put(id, (ObjectNode) objectMapper.readTree(body, sourceStart, sourceEnd - sourceStart)) == null;
+                }
+                if (created) {
+                    index.count.increment();
+                }
+                result = created ? "created" : "updated";
+                status = created ? 201 : 200;
+            }
+            case "update" -> {
+                if (!settings.storeDocuments()) {
+                    result = "updated";
+                } else {
+                    ObjectNode document = index.documents.get(id);
+                    if (document == null) {
+                        writeItemError(json, concreteIndex, id, 404, "document_missing_exception",
+                                "[" + id + "]: document missing");
+                        return false;
+                    }
+                    JsonNode update = objectMapper.readTree(body, sourceStart, sourceEnd - sourceStart);
+                    boolean changed;
+                    synchronized (document) {
+                        changed = update.has("script")
+                                ? applyGuardedUpdate(document, update.path("script").path("params"))
+                                : applyPartialDocument(document, update.path("doc"));
+                    }
+                    result = changed ? "updated" : "noop";
+                }
+            }
+            case "delete" -> {
+                boolean deleted = !settings.storeDocuments() || index.documents.remove(id) != null;
+                if (deleted) {
+                    index.count.decrement();
+                }
+                result = deleted ? "deleted" : "not_found";
+                status = deleted ? 200 : 404;
+            }
+            default -> {
+                writeItemError(json, concreteIndex, id, 400, "illegal_argument_exception", "Unknown action: " + action);
+                return false;
+            }
+        }
+
+        json.writeStringField("_index", concreteIndex);
+        json.writeStringField("_id", id);
+        json.writeNumberField("_version", 1);
+        json.writeStringField("result", result);
+        json.writeFieldName("_shards");
+        json.writeStartObject();
+        writeShards(json);
+        json.writeEndObject();
+        json.writeNumberField("_seq_no", index.seqNo.getAndIncrement());
+        json.writeNumberField("_primary_term", 1);
+        json.writeNumberField("status", status);
+        return true;
+    }
+
+    private static boolean applyPartialDocument(ObjectNode document, JsonNode doc) {
+        doc.properties().forEach(field -> document.set(field.getKey(), field.getValue()));
+        return true;
+    }
+
+    /**
+     * Same rules as the guarded update script of the service: a field is only set by an event at least as new
+     * as the one that set it last.
+     */
+    private static boolean applyGuardedUpdate(ObjectNode document, JsonNode params) {
+        ObjectNode appliedTimestamps = document.has(FIELD_TIMESTAMPS)
+                ? (ObjectNode) document.get(FIELD_TIMESTAMPS)
+                : document.putObject(FIELD_TIMESTAMPS);
+        boolean changed = false;
+        for (var field : params.path("fields").properties()) {
+            long timestamp = params.path("timestamps").path(field.getKey()).asLong();
+            JsonNode applied = appliedTimestamps.get(field.getKey());
+            if (applied == null || applied.asLong() <= timestamp) {
+                document.set(field.getKey(), field.getValue());
+                appliedTimestamps.put(field.getKey(), timestamp);
+                changed = true;
+            }
+        }
+        if (changed) {
+            document.set("lastUpdated", params.path("lastUpdated"));
+        }
+        return changed;
+    }
+
+    private void get(HttpExchange exchange, String indexName, String id) throws IOException {
+        List<String> targets = resolve(indexName);
+        Index index = targets.size() == 1 ? indices.get(targets.get(0)) : null;
+        if (index == null) {
+            sendError(exchange, 404, "index_not_found_exception", "no such index [" + indexName + "]");
+            return;
+        }
+        ObjectNode document = index.documents.get(id);
+        send(exchange, document != null ? 200 : 404, json -> writeGetResult(json, targets.get(0), id, document, null));
+    }
+
+    private void mget(HttpExchange exchange, String indexName, String query, byte[] body) throws IOException {
+        JsonNode request = objectMapper.readTree(body);
+        Set<String> includes = sourceIncludes(query);
+
+        send(exchange, 200, json -> {
+            json.writeArrayFieldStart("docs");
+            List<JsonNode> docs = new ArrayList<>();
+            request.path("ids").forEach(docs::add);
+            request.path("docs").forEach(docs::add);
+            for (JsonNode doc : docs) {
+                String id = doc.isTextual() ? doc.asText() : doc.path("_id").asText();
+                String docIndex = doc.hasNonNull("_index") ? doc.get("_index").asText() : indexName;
+                List<String> targets = resolve(docIndex);
+                Index index = targets.size() == 1 ? indices.get(targets.get(0)) : null;
+
+                json.writeStartObject();
+                if (index == null) {
+                    json.writeStringField("_index", docIndex);
+                    json.writeStringField("_id", id);
+                    json.writeObjectFieldStart("error");
+                    json.writeStringField("type", "index_not_found_exception");
+                    json.writeStringField("reason", "no such index [" + docIndex + "]");
+                    json.writeEndObject();
+                } else {
+                    writeGetResult(json, targets.get(0), id, index.documents.get(id), includes);
+                }
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        });
+    }
+
+    private void writeGetResult(JsonGenerator json, String index, String id, ObjectNode document,
+                                Set<String> includes) throws IOException {
+        json.writeStringField("_index", index);
+        json.writeStringField("_id", id);
+        json.writeBooleanField("found", document != null);
+        if (document == null) {
+            return;
+        }
+        json.writeNumberField("_version", 1);
+        json.writeNumberField("_seq_no", 0);
+        json.writeNumberField("_primary_term", 1);
+        json.writeFieldName("_source");
+        synchronized (document) {
+            if (includes.isEmpty()) {
+                json.writeTree(document);
+            } else {
+                ObjectNode source = objectMapper.createObjectNode();
+                includes.forEach(field -> {
+                    if (document.has(field)) {
+                        source.set(field, document.get(field));
+                    }
+                });
+                json.writeTree(source);
+            }
+        }
+    }
+
+    private void updateAliases(HttpExchange exchange, byte[] body) throws IOException {
+        for (JsonNode action : objectMapper.readTree(body).path("actions")) {
+            if (action.has("add")) {
+                JsonNode add = action.get("add");
+                aliases.computeIfAbsent(add.path("alias").asText(), alias -> ConcurrentHashMap.newKeySet())
+                        .addAll(matching(add.path("index").asText()));
+            } else if (action.has("remove")) {
+                JsonNode remove = action.get("remove");
+                Set<String> aliasIndices = aliases.get(remove.path("alias").asText());
+                if (aliasIndices != null) {
+                    aliasIndices.removeAll(matching(remove.path("index").asText()));
+                }
+            }
+        }
+        aliases.values().removeIf(Set::isEmpty);
+        send(exchange, 200, json -> json.writeBooleanField("acknowledged", true));
+    }
+
+    private void writeAliases(JsonGenerator json, String alias) throws IOException {
+        for (String index : aliases.getOrDefault(alias, Set.of())) {
+            json.writeObjectFieldStart(index);
+            json.writeObjectFieldStart("aliases");
+            json.writeObjectFieldStart(alias);
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+    }
+
+    private void health(HttpExchange exchange) throws IOException {
+        send(exchange, 200, json -> {
+            json.writeStringField("cluster_name", "fake");
+            json.writeStringField("status", "green");
+            json.writeBooleanField("timed_out", false);
+            json.writeNumberField("number_of_nodes", 1);
+            json.writeNumberField("number_of_data_nodes", 1);
+            json.writeNumberField("active_primary_shards", indices.size());
+            json.writeNumberField("active_shards", indices.size());
+            json.writeNumberField("relocating_shards", 0);
+            json.writeNumberField("initializing_shards", 0);
+            json.writeNumberField("unassigned_shards", 0);
+            json.writeNumberField("unassigned_primary_shards", 0);
+            json.writeNumberField("delayed_unassigned_shards", 0);
+            json.writeNumberField("number_of_pending_tasks", 0);
+            json.writeNumberField("number_of_in_flight_fetch", 0);
+            json.writeNumberField("task_max_waiting_in_queue_millis", 0);
+            json.writeNumberField("active_shards_percent_as_number", 100.0);
+        });
+    }
+
+    private void writeShards(JsonGenerator json) throws IOException {
+        json.writeNumberField("total", 1);
+        json.writeNumberField("successful", 1);
+        json.writeNumberField("failed", 0);
+    }
+
+    private void writeItemError(JsonGenerator json, String index, String id, int status, String type,
+                                String reason) throws IOException {
+        json.writeStringField("_index", index);
+        json.writeStringField("_id", id);
+        json.writeNumberField("status", status);
+        json.writeObjectFieldStart("error");
+        json.writeStringField("type", type);
+        json.writeStringField("reason", reason);
+        json.writeEndObject();
+    }
+
+    /**
+     * Concrete indices behind a name, which may be an index, an alias or a pattern.
+     */
+    private List<String> resolve(String name) {
+        if (name == null) {
+            return List.of();
+        }
+        Set<String> aliasIndices = aliases.get(name);
+        if (aliasIndices != null) {
+            return List.copyOf(aliasIndices);
+        }
+        return matching(name);
+    }
+
+    private List<String> matching(String pattern) {
+        Set<String> result = new HashSet<>();
+        for (String part : pattern.split(",")) {
+            if (part.contains("*")) {
+                Pattern regex = Pattern.compile(Arrays.stream(part.split("\\*", -1))
+                        .map(Pattern::quote)
+                        .reduce((left, right) -> left + ".*" + right)
+                        .orElse(""));
+                indices.keySet().stream().filter(index -> regex.matcher(index).matches()).forEach(result::add);
+            } else if (indices.containsKey(part)) {
+                result.add(part);
+            }
+        }
+        return result.stream().sorted().toList();
+    }
+
+    private static Set<String> sourceIncludes(String query) {
+        if (query == null) {
+            return Set.of();
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("_source_includes=")) {
+                String value = URLDecoder.decode(parameter.substring("_source_includes=".length()), StandardCharsets.UTF_8);
+                return Set.of(value.split(","));
+            }
+        }
+        return Set.of();
+    }
+
+    private void delay() {
+        long millis = settings.latency().toMillis();
+        if (!settings.latencyJitter().isZero()) {
+            millis += ThreadLocalRandom.current().nextLong(settings.latencyJitter().toMillis() + 1);
+        }
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static int lineEnd(byte[] body, int from) {
+        int end = from;
+        while (end < body.length && body[end] != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    private void send(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonGenerator json = objectMapper.createGenerator(bytes)) {
+            json.writeStartObject();
+            body.write(json);
+            json.writeEndObject();
+        }
+        exchange.getResponseHeaders().set(PRODUCT_HEADER, "Elasticsearch");
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.size());
+        try (OutputStream output = exchange.getResponseBody()) {
+            bytes.writeTo(output);
+        }
+    }
+
+    private void sendEmpty(HttpExchange exchange, int status) throws IOException {
+        exchange.getResponseHeaders().set(PRODUCT_HEADER, "Elasticsearch");
+        exchange.sendResponseHeaders(status, -1);
+    }
+
+    private void sendError(HttpExchange exchange, int status, String type, String reason) throws IOException {
+        send(exchange, status, json -> {
+            json.writeObjectFieldStart("error");
+            json.writeArrayFieldStart("root_cause");
+            json.writeStartObject();
+            json.writeStringField("type", type);
+            json.writeStringField("reason", reason);
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeStringField("type", type);
+            json.writeStringField("reason", reason);
+            json.writeEndObject();
+            json.writeNumberField("status", status);
+        });
+    }
+}
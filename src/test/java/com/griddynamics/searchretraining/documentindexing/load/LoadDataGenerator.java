@@ -0,0 +1,254 @@
+package com.griddynamics.searchretraining.documentindexing.load;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.griddynamics.searchretraining.documentindexing.model.ProductDocument;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Deterministic catalogs and update streams for the load tests: the same seed and settings always produce the
+ * same bytes, so runs of different builds can be compared. Catalogs are streamed to disk and never held in memory.
+ */
+public final class LoadDataGenerator {
+
+    private static final String[] CATEGORIES = {
+            "Apparel > Jackets", "Apparel > Shirts", "Footwear > Running", "Footwear > Hiking",
+            "Accessories > Bags", "Accessories > Hats", "Outdoor > Tents", "Outdoor > Backpacks"
+    };
+
+    private static final String[] BRANDS = {"UrbanFlex", "TrailMark", "Northline", "AeroStep", "Kinetic", "Vela"};
+
+    private static final String[] COLORS = {"Black", "Blue", "Red", "Green", "Grey", "White", "Orange"};
+
+    private static final String[] SIZES = {"XS", "S", "M", "L", "XL", "XXL"};
+
+    private static final String[] WORDS = {
+            "lightweight", "breathable", "waterproof", "durable", "recycled", "moisture-wicking", "insulated",
+            "reflective", "packable", "stretch", "ripstop", "seamless", "ventilated", "organic", "cotton", "nylon"
+    };
+
+    /**
+     * Fields updated by the stream with their relative frequency; prices and stock change far more often than
+     * names and descriptions.
+     */
+    private static final String[] UPDATED_FIELDS = {
+            ProductDocument.Fields.PRICE, ProductDocument.Fields.PRICE, ProductDocument.Fields.PRICE,
+            ProductDocument.Fields.STOCK, ProductDocument.Fields.STOCK, ProductDocument.Fields.STOCK,
+            ProductDocument.Fields.AVAILABLE, ProductDocument.Fields.NAME, ProductDocument.Fields.DESCRIPTION,
+            ProductDocument.Fields.BRAND
+    };
+
+    private static final Instant CATALOG_TIME = Instant.parse("2025-06-20T11:00:00Z");
+
+    /**
+     * @param parts        files the catalog is split into; a single part is written as one JSON array
+     * @param ndjson       write the parts as one document per line instead of JSON arrays
+     * @param gzip         compress the parts
+     * @param documentSize approximate size of one document in bytes, mostly taken by its description
+     */
+    public record CatalogSettings(long seed, int documents, int documentSize, int parts, boolean ndjson, boolean gzip) {
+    }
+
+    /**
+     * @param hotKeyRatio      share of events updating one of the {@code hotKeys} first products
+     * @param duplicateRatio   share of events repeating an earlier event of the stream
+     * @param outOfOrderRatio  share of events timestamped up to {@code maxReorder} before the events around them
+     */
+    public record UpdateSettings(long seed, int catalogDocuments, int hotKeys, double hotKeyRatio,
+                                 double duplicateRatio, double outOfOrderRatio, Duration maxReorder) {
+    }
+
+    private LoadDataGenerator() {
+    }
+
+    public static String id(int index) {
+        return "SKU-" + (1_000_000 + index);
+    }
+
+    /**
+     * The product at {@code index} of a catalog of the seed; does not depend on the other products.
+     */
+    public static ProductDocument product(long seed, int index, int documentSize) {
+        SplittableRandom random = new SplittableRandom(seed * 31 + index);
+        return new ProductDocument(
+                id(index),
+                BRANDS[random.nextInt(BRANDS.length)] + " " + words(random, 2) + " " + index,
+                description(random, documentSize),
+                CATEGORIES[random.nextInt(CATEGORIES.length)],
+                BRANDS[random.nextInt(BRANDS.length)],
+                price(random),
+                "USD",
+                random.nextInt(10) != 0,
+                random.nextInt(1000),
+                List.of(COLORS[random.nextInt(COLORS.length)], COLORS[random.nextInt(COLORS.length)]),
+                List.of(SIZES).subList(0, 1 + random.nextInt(SIZES.length)),
+                ZonedDateTime.ofInstant(CATALOG_TIME, ZoneOffset.UTC)
+        );
+    }
+
+    /**
+     * Writes the catalog into {@code directory}.
+     *
+     * @return the files written, in part order
+     */
+    public static List<Path> writeCatalog(CatalogSettings settings, Path directory) {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        List<Path> files = new ArrayList<>();
+        int perPart = (settings.documents() + settings.parts() - 1) / settings.parts();
+
+        try {
+            Files.createDirectories(directory);
+            for (int part = 0; part < settings.parts(); part++) {
+                String extension = (settings.ndjson() ? ".ndjson" : ".json") + (settings.gzip() ? ".gz" : "");
+                Path file = directory.resolve("catalog-%03d%s".formatted(part, extension));
+                int from = part * perPart;
+                int to = Math.min(settings.documents(), from + perPart);
+
+                try (OutputStream output = open(file, settings.gzip());
+                     JsonGenerator json = objectMapper.createGenerator(output)) {
+                    if (settings.ndjson()) {
+                        json.setRootValueSeparator(null);
+                    } else {
+                        json.writeStartArray();
+                    }
+                    for (int index = from; index < to; index++) {
+                        json.writeObject(product(settings.seed(), index, settings.documentSize()));
+                        if (settings.ndjson()) {
+                            json.writeRaw('\n');
+                        }
+                    }
+                    if (!settings.ndjson()) {
+                        json.writeEndArray();
+                    }
+                }
+                files.add(file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write catalog into " + directory, e);
+        }
+        return files;
+    }
+
+    /**
+     * Endless, seeded stream of update events of a catalog. Events only touch updatable fields and always change
+     * the value; timestamps advance with the calls to {@link #next(Instant)}, except for out-of-order events.
+     */
+    public static class UpdateStream {
+
+        private static final int RECENT_EVENTS = 1024;
+
+        private final UpdateSettings settings;
+
+        private final Random random;
+
+        private final ProductUpdateEvent[] recent = new ProductUpdateEvent[RECENT_EVENTS];
+
+        private long generated;
+
+        public UpdateStream(UpdateSettings settings) {
+            this.settings = settings;
+            this.random = new Random(settings.seed());
+        }
+
+        public ProductUpdateEvent next(Instant now) {
+            ProductUpdateEvent event;
+            if (generated > 0 && random.nextDouble() < settings.duplicateRatio()) {
+                event = recent[random.nextInt((int) Math.min(generated, RECENT_EVENTS))];
+            } else {
+                event = fresh(now);
+            }
+            recent[(int) (generated++ % RECENT_EVENTS)] = event;
+            return event;
+        }
+
+        public List<ProductUpdateEvent> next(int count, Instant now) {
+            List<ProductUpdateEvent> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                events.add(next(now));
+            }
+            return events;
+        }
+
+        private ProductUpdateEvent fresh(Instant now) {
+            int index = random.nextDouble() < settings.hotKeyRatio()
+                    ? random.nextInt(Math.max(1, Math.min(settings.hotKeys(), settings.catalogDocuments())))
+                    : random.nextInt(settings.catalogDocuments());
+            String field = UPDATED_FIELDS[random.nextInt(UPDATED_FIELDS.length)];
+
+            Instant timestamp = now;
+            if (random.nextDouble() < settings.outOfOrderRatio()) {
+                timestamp = now.minusMillis(1 + (long) (random.nextDouble() * settings.maxReorder().toMillis()));
+            }
+
+            String oldValue = value(field);
+            String newValue = value(field);
+            while (newValue.equals(oldValue)) {
+                newValue = value(field);
+            }
+            return new ProductUpdateEvent(id(index), field, oldValue, newValue, timestamp);
+        }
+
+        private String value(String field) {
+            return switch (field) {
+                case ProductDocument.Fields.PRICE -> String.valueOf(price(random));
+                case ProductDocument.Fields.STOCK -> String.valueOf(random.nextInt(1000));
+                case ProductDocument.Fields.AVAILABLE -> String.valueOf(random.nextBoolean());
+                case ProductDocument.Fields.BRAND -> BRANDS[random.nextInt(BRANDS.length)];
+                case ProductDocument.Fields.NAME -> "Product " + random.nextInt(1_000_000);
+                default -> "Updated description " + random.nextInt(1_000_000);
+            };
+        }
+    }
+
+    private static OutputStream open(Path file, boolean gzip) throws IOException {
+        OutputStream output = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024);
+        return gzip ? new GZIPOutputStream(output, 64 * 1024) : output;
+    }
+
+    private static double price(SplittableRandom random) {
+        return Math.round((5 + random.nextDouble() * 495) * 100) / 100.0;
+    }
+
+    private static double price(Random random) {
+        return Math.round((5 + random.nextDouble() * 495) * 100) / 100.0;
+    }
+
+    private static String words(SplittableRandom random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                words.append(' ');
+            }
+            words.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return words.toString();
+    }
+
+    private static String description(SplittableRandom random, int length) {
+        StringBuilder text = new StringBuilder(length + 32);
+        while (text.length() < length) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        text.setLength(Math.max(0, length));
+        return text.toString().strip();
+    }
+}
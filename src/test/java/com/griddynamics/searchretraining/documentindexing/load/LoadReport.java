@@ -0,0 +1,104 @@
+package com.griddynamics.searchretraining.documentindexing.load;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures one load scenario: throughput, heap usage sampled every {@value #HEAP_SAMPLE_MILLIS} ms, and latency
+ * percentiles of the timers the service already publishes. Percentiles need the timers to publish them, see
+ * {@code management.metrics.distribution.percentiles} in the load test.
+ */
+@Slf4j
+public class LoadReport implements AutoCloseable {
+
+    private static final long HEAP_SAMPLE_MILLIS = 100;
+
+    private final String scenario;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "load-heap-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong peakHeap = new AtomicLong();
+
+    private final long startHeap;
+
+    private final long startNanos = System.nanoTime();
+
+    private final List<String> lines = new ArrayList<>();
+
+    public LoadReport(String scenario) {
+        this.scenario = scenario;
+        System.gc();
+        this.startHeap = memory.getHeapMemoryUsage().getUsed();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public double elapsedSeconds() {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    public LoadReport throughput(String what, long count) {
+        double seconds = elapsedSeconds();
+        lines.add("%-28s %,d in %.1f s = %,.0f/s".formatted(what, count, seconds, count / seconds));
+        return this;
+    }
+
+    public LoadReport value(String what, Object value) {
+        lines.add("%-28s %s".formatted(what, value));
+        return this;
+    }
+
+    /**
+     * Adds the percentiles of every timer registered under {@code name}, one line per tag combination.
+     */
+    public LoadReport latencies(MeterRegistry meterRegistry, String name) {
+        for (Timer timer : meterRegistry.find(name).timers()) {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            StringBuilder line = new StringBuilder("%-28s n=%,d mean=%.1fms max=%.1fms".formatted(
+                    name + timer.getId().getTags(), snapshot.count(),
+                    snapshot.mean(TimeUnit.MILLISECONDS), snapshot.max(TimeUnit.MILLISECONDS)));
+            for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+                line.append(" p%s=%.1fms".formatted(
+                        formatPercentile(percentile.percentile()), percentile.value(TimeUnit.MILLISECONDS)));
+            }
+            lines.add(line.toString());
+        }
+        return this;
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+        long endHeap = memory.getHeapMemoryUsage().getUsed();
+        lines.add("%-28s start=%s peak=%s end=%s".formatted("heap", megabytes(startHeap),
+                megabytes(Math.max(peakHeap.get(), endHeap)), megabytes(endHeap)));
+        log.info("Load report of {}:\n  {}", scenario, String.join("\n  ", lines));
+    }
+
+    private static String megabytes(long bytes) {
+        return "%,.0fMB".formatted(bytes / (1024.0 * 1024.0));
+    }
+
+    private static String formatPercentile(double percentile) {
+        String digits = String.valueOf(percentile * 100);
+        return digits.endsWith(".0") ? digits.substring(0, digits.length() - 2) : digits;
+    }
+}
@@ -0,0 +1,235 @@
+package com.griddynamics.searchretraining.documentindexing.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.griddynamics.searchretraining.documentindexing.model.ProductUpdateEvent;
+import com.griddynamics.searchretraining.documentindexing.model.UpdateCatalogResponse;
+import com.griddynamics.searchretraining.documentindexing.repository.ProductIndexerRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput tests of the reindex and of the update stream against {@link FakeElasticsearch}, so they measure
+ * the service and not the cluster. Excluded from the default build; run them with {@code mvn test -Pload}.
+ * Sizes, rates and the behaviour of the fake are read from system properties, for example
+ * {@code -Dload.catalog.documents=5000000 -Dload.es.latency=20ms -Dload.es.rejection-rate=0.01}.
+ * <p>
+ * Update latency is measured from the event timestamp, so out-of-order events add their shift to it.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PipelineLoadTest {
+
+    private static final long SEED = Long.getLong("load.seed", 42);
+
+    private static final int CATALOG_DOCUMENTS = Integer.getInteger("load.catalog.documents", 200_000);
+
+    private static final int DOCUMENT_SIZE = Integer.getInteger("load.catalog.document-size", 500);
+
+    private static final int CATALOG_PARTS = Integer.getInteger("load.catalog.parts", 4);
+
+    private static final boolean CATALOG_GZIP = Boolean.parseBoolean(System.getProperty("load.catalog.gzip", "true"));
+
+    private static final int UPDATES_PER_SECOND = Integer.getInteger("load.updates.rate", 20_000);
+
+    private static final Duration UPDATES_DURATION = duration("load.updates.duration", "30s");
+
+    private static final int HOT_KEYS = Integer.getInteger("load.updates.hot-keys", 100);
+
+    private static final double HOT_KEY_RATIO = ratio("load.updates.hot-key-ratio", "0.2");
+
+    private static final double DUPLICATE_RATIO = ratio("load.updates.duplicate-ratio", "0.05");
+
+    private static final double OUT_OF_ORDER_RATIO = ratio("load.updates.out-of-order-ratio", "0.01");
+
+    private static final Duration MAX_REORDER = duration("load.updates.max-reorder", "500ms");
+
+    private static final Duration SEND_INTERVAL = Duration.ofMillis(100);
+
+    private static final Duration DRAIN_QUIET_PERIOD = Duration.ofSeconds(2);
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofMinutes(2);
+
+    private static FakeElasticsearch elasticsearch;
+
+    private static Path workDirectory;
+
+    @Autowired
+    private ProductIndexerRepository productIndexerRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void loadEnvironment(DynamicPropertyRegistry registry) throws IOException {
+        workDirectory = Files.createTempDirectory("document-indexing-load-");
+        Path catalog = workDirectory.resolve("catalog");
+        LoadDataGenerator.writeCatalog(new LoadDataGenerator.CatalogSettings(SEED, CATALOG_DOCUMENTS, DOCUMENT_SIZE,
+                CATALOG_PARTS, CATALOG_PARTS > 1, CATALOG_GZIP), catalog);
+
+        elasticsearch = new FakeElasticsearch(new FakeElasticsearch.Settings(
+                duration("load.es.latency", "5ms"),
+                duration("load.es.latency-jitter", "5ms"),
+                ratio("load.es.rejection-rate", "0"),
+                Boolean.getBoolean("load.es.store-documents")));
+
+        registry.add("spring.elasticsearch.uris", elasticsearch::uri);
+        registry.add("index.bulk-data", () -> catalog.toUri().toString());
+        registry.add("index.delta.fingerprint-file", () -> workDirectory.resolve("fingerprints.bin").toString());
+        registry.add("index.retry.dead-letter-file", () -> workDirectory.resolve("dead-letters.ndjson").toString());
+        registry.add("journal.directory", () -> workDirectory.resolve("journal").toString());
+        registry.add("management.metrics.distribution.percentiles.product.update.latency", () -> "0.5,0.95,0.99");
+        registry.add("management.metrics.distribution.percentiles.es.bulk.duration", () -> "0.5,0.95,0.99");
+    }
+
+    @AfterAll
+    static void stopElasticsearch() {
+        if (elasticsearch != null) {
+            elasticsearch.close();
+        }
+    }
+
+    @Test
+    void reindexThroughput() {
+        long bulkItemsBefore = elasticsearch.bulkItems();
+        long rejectedItemsBefore = elasticsearch.rejectedItems();
+        UpdateCatalogResponse response;
+
+        try (LoadReport report = new LoadReport("full reindex")) {
+            response = productIndexerRepository.reindexCatalog();
+            report.throughput("documents indexed", response.count())
+                    .value("bulk items sent", elasticsearch.bulkItems() - bulkItemsBefore)
+                    .value("items rejected by ES", elasticsearch.rejectedItems() - rejectedItemsBefore)
+                    .value("documents failed", response.errors() == null ? 0 : response.errors().size())
+                    .latencies(meterRegistry, "es.bulk.duration");
+        }
+
+        assertThat(response.count()).isEqualTo(CATALOG_DOCUMENTS);
+    }
+
+    @Test
+    void updateStreamThroughput() throws Exception {
+        productIndexerRepository.reindexCatalog();
+
+        HttpClient httpClient = HttpClient.newHttpClient();
+        URI asyncUpdate = URI.create("http://localhost:" + port + "/document-indexing/products/asyncUpdate");
+        var updates = new LoadDataGenerator.UpdateStream(new LoadDataGenerator.UpdateSettings(SEED, CATALOG_DOCUMENTS,
+                HOT_KEYS, HOT_KEY_RATIO, DUPLICATE_RATIO, OUT_OF_ORDER_RATIO, MAX_REORDER));
+        int eventsPerSend = (int) Math.max(1, UPDATES_PER_SECOND * SEND_INTERVAL.toMillis() / 1000);
+        long acknowledgedBefore = acknowledgedUpdates();
+        long bulkRequestsBefore = elasticsearch.bulkRequests();
+        long rejectedItemsBefore = elasticsearch.rejectedItems();
+        long sent = 0;
+        long accepted = 0;
+        long rejected = 0;
+
+        try (LoadReport report = new LoadReport("update stream")) {
+            long deadline = System.nanoTime() + UPDATES_DURATION.toNanos();
+            long nextSend = System.nanoTime();
+            while (System.nanoTime() < deadline) {
+                byte[] body = ndjson(updates.next(eventsPerSend, Instant.now()));
+                HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(asyncUpdate)
+                                .header("Content-Type", "application/x-ndjson")
+                                .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertThat(response.statusCode()).as(response.body()).isIn(202, 429, 503);
+                var result = objectMapper.readTree(response.body());
+                sent += eventsPerSend;
+                accepted += result.path("accepted").asLong();
+                rejected += result.path("rejected").asLong();
+
+                nextSend += SEND_INTERVAL.toNanos();
+                LockSupport.parkNanos(nextSend - System.nanoTime());
+            }
+            long acknowledged = awaitDrained() - acknowledgedBefore;
+
+            report.throughput("events sent", sent)
+                    .value("events accepted", accepted)
+                    .value("events rejected (429/503)", rejected)
+                    .value("events acknowledged", acknowledged)
+                    .value("bulk requests", elasticsearch.bulkRequests() - bulkRequestsBefore)
+                    .value("items rejected by ES", elasticsearch.rejectedItems() - rejectedItemsBefore)
+                    .latencies(meterRegistry, "product.update.latency")
+                    .latencies(meterRegistry, "product.update.bulk.wait")
+                    .latencies(meterRegistry, "es.bulk.duration");
+        }
+
+        assertThat(accepted).isPositive();
+    }
+
+    /**
+     * Waits until no update has been acknowledged for {@link #DRAIN_QUIET_PERIOD}, which outlasts the longest
+     * group timeout, so batches still held by the aggregators are released.
+     */
+    private long awaitDrained() {
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        long acknowledged = acknowledgedUpdates();
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(DRAIN_QUIET_PERIOD.toNanos());
+            long current = acknowledgedUpdates();
+            if (current == acknowledged) {
+                return current;
+            }
+            acknowledged = current;
+        }
+        return acknowledged;
+    }
+
+    private long acknowledgedUpdates() {
+        return meterRegistry.find("product.update.latency").timers().stream().mapToLong(Timer::count).sum();
+    }
+
+    private byte[] ndjson(List<ProductUpdateEvent> events) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(events.size() * 128);
+        for (ProductUpdateEvent event : events) {
+            objectMapper.writeValue(body, event);
+            body.write('\n');
+        }
+        return body.toByteArray();
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        String value = System.getProperty(property, defaultValue).trim();
+        long amount = Long.parseLong(value.replaceAll("[^0-9]", ""));
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(amount);
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(amount);
+        }
+        return Duration.ofSeconds(amount);
+    }
+
+    private static double ratio(String property, String defaultValue) {
+        return Double.parseDouble(System.getProperty(property, defaultValue));
+    }
+}
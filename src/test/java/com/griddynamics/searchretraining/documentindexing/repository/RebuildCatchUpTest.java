@@ -0,0 +1,107 @@
+package com.griddynamics.searchretraining.documentindexing.repository;
+
+import com.griddynamics.searchretraining.documentindexing.config.IndexProperties;
+import com.griddynamics.searchretraining.documentindexing.model.ProductPartialUpdate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RebuildCatchUpTest {
+
+    private final List<Integer> rounds = new ArrayList<>();
+
+    private final List<String> events = new ArrayList<>();
+
+    @Test
+    void shouldReplayInRoundsUntilARoundIsSmallEnough() {
+        RebuildCatchUp catchUp = catchUp(100, 5, 1);
+        catchUp.start();
+        catchUp.record(updates(3));
+
+        // updates keep arriving while the first two rounds are replayed
+        int total = catchUp.finish(updates -> {
+            replay(updates);
+            if (rounds.size() == 1) {
+                catchUp.record(updates(2));
+            } else if (rounds.size() == 2) {
+                catchUp.record(updates(1));
+            }
+        }, () -> events.add("switch"));
+
+        assertThat(rounds).containsExactly(3, 2, 1, 0);
+        assertThat(total).isEqualTo(6);
+        assertThat(events).containsExactly("replay", "replay", "replay", "replay", "switch");
+    }
+
+    @Test
+    void shouldStopAfterMaxRoundsAndReplayTheRestWithTheSwitch() {
+        RebuildCatchUp catchUp = catchUp(100, 2, 1);
+        catchUp.start();
+        catchUp.record(updates(4));
+
+        int total = catchUp.finish(updates -> {
+            replay(updates);
+            if (rounds.size() <= 2) {
+                catchUp.record(updates(3));
+            }
+        }, () -> events.add("switch"));
+
+        assertThat(rounds).containsExactly(4, 3, 3);
+        assertThat(total).isEqualTo(10);
+        assertThat(events).endsWith("replay", "switch");
+    }
+
+    @Test
+    void shouldNotSwitchAfterBufferOverflow() {
+        RebuildCatchUp catchUp = catchUp(5, 5, 1);
+        catchUp.start();
+        catchUp.record(updates(3));
+        catchUp.record(updates(3));
+
+        assertThatThrownBy(() -> catchUp.finish(this::replay, () -> events.add("switch")))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(rounds).isEmpty();
+        assertThat(events).doesNotContain("switch");
+    }
+
+    @Test
+    void shouldNotRecordOutsideARebuild() {
+        RebuildCatchUp catchUp = catchUp(100, 5, 1);
+        catchUp.record(updates(3));
+
+        catchUp.start();
+        catchUp.record(updates(1));
+        catchUp.finish(this::replay, () -> events.add("switch"));
+        catchUp.record(updates(2));
+
+        assertThat(rounds).containsExactly(1, 0);
+    }
+
+    private void replay(List<ProductPartialUpdate> updates) {
+        rounds.add(updates.size());
+        events.add("replay");
+    }
+
+    private static RebuildCatchUp catchUp(int maxBufferedUpdates, int maxRounds, int finalRoundSize) {
+        IndexProperties indexProperties = mock(IndexProperties.class);
+        when(indexProperties.catchUp())
+                .thenReturn(new IndexProperties.CatchUp(true, maxBufferedUpdates, maxRounds, finalRoundSize));
+        return new RebuildCatchUp(indexProperties, new SimpleMeterRegistry());
+    }
+
+    private static List<ProductPartialUpdate> updates(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new ProductPartialUpdate("SKU-" + i, Map.of("price", "9.99"), Instant.EPOCH))
+                .toList();
+    }
+}